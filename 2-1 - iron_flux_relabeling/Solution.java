@@ -1,9 +1,28 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Solution {
 
+    // 256 MiB of tables, enough for one of height 26 or every height up to 25 at once.
+    private static final ParentTableCache PARENT_TABLES = new ParentTableCache(1L << 28);
+
+    private static volatile PhaseListener phaseListener;
+
     /**
      * Returns an int array of top converter labels.
      *
@@ -12,8 +31,132 @@ public class Solution {
      * @return  an array of top converter labels
      */
     public static int[] solution(int height, int[] converters) {
+        PostOrderResolver resolver = new PostOrderResolver(height);
+        Phase phase = Phase.start("PostOrderResolver", "resolve");
+        int[] result = Arrays.stream(converters).map(i -> (int) resolver.getParentLabel(i)).toArray();
+        phase.end(converters.length);
+        return result;
+    }
+
+    /**
+     * Returns a long array of top converter labels, supporting trees up to a height of 62.
+     *
+     * @param height  the height of the perfect binary tree
+     * @param converters  the converters to check in the tree
+     * @return  an array of top converter labels
+     */
+    public static long[] solution(int height, long[] converters) {
+        PostOrderResolver resolver = new PostOrderResolver(height);
+        Phase phase = Phase.start("PostOrderResolver", "resolve");
+        long[] result = Arrays.stream(converters).map(resolver::getParentLabel).toArray();
+        phase.end(converters.length);
+        return result;
+    }
+
+    /**
+     * Writes the top converter label of every label in the input file to the output file. Both files
+     * hold packed big-endian 64 bit labels, and are memory mapped one chunk at a time.
+     *
+     * @param height  the height of the perfect binary tree
+     * @param input  the file of converter labels to check in the tree
+     * @param output  the file to write the top converter labels to, replaced if it exists
+     * @param chunkSize  the number of labels to map and resolve at a time
+     * @throws IOException  if a file cannot be mapped, the input ends in a partial label, or both are one file
+     */
+    public static void solution(int height, Path input, Path output, int chunkSize) throws IOException {
+        MappedLabelStream labelStream = new MappedLabelStream(new PostOrderResolver(height), chunkSize);
+        labelStream.resolve(input, output);
+    }
+
+    /**
+     * Writes the top converter label of every label in the input file to the output file, using
+     * the default chunk size.
+     *
+     * @param height  the height of the perfect binary tree
+     * @param input  the file of converter labels to check in the tree
+     * @param output  the file to write the top converter labels to, replaced if it exists
+     * @throws IOException  if a file cannot be mapped, the input ends in a partial label, or both are one file
+     */
+    public static void solution(int height, Path input, Path output) throws IOException {
+        solution(height, input, output, MappedLabelStream.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Returns an int array of top converter labels using a cached parent table for the height,
+     * resolving large query arrays in parallel.
+     *
+     * @param height  the height of the perfect binary tree, between 1 and 30
+     * @param converters  the converters to check in the tree
+     * @return  an array of top converter labels
+     */
+    public static int[] solutionBatch(int height, int[] converters) {
+        int[] parentTable = PARENT_TABLES.getParentTable(height);
+        Phase phase = Phase.start("BatchResolver", "resolve");
+        int[] result = new int[converters.length];
+        ForkJoinPool.commonPool().invoke(new BatchResolver(parentTable, converters, result, 0, converters.length));
+        phase.end(converters.length);
+        return result;
+    }
+
+    /**
+     * Returns the number of batch calls which found their parent table in the cache.
+     */
+    public static long getCacheHits() {
+        return PARENT_TABLES.hits.get();
+    }
+
+    /**
+     * Returns the number of batch calls which had to build their parent table.
+     */
+    public static long getCacheMisses() {
+        return PARENT_TABLES.misses.get();
+    }
+
+    /**
+     * Returns an int array of top converter labels by materializing the whole tree before
+     * answering any query. Kept as the reference implementation for the arithmetic resolver.
+     *
+     * @param height  the height of the perfect binary tree to construct
+     * @param converters  the converters to check in the tree
+     * @return  an array of top converter labels
+     */
+    public static int[] solutionFromTree(int height, int[] converters) {
+        Phase buildPhase = Phase.start("NodeTree", "build");
         Map<Integer, Node> nodeTree = createNodeTree(height);
-        return Arrays.stream(converters).map(i -> getTopConverter(i, nodeTree)).toArray();
+        // Every node addNodes created is in the map.
+        buildPhase.end(nodeTree.size());
+        Phase resolvePhase = Phase.start("NodeTree", "resolve");
+        int[] result = Arrays.stream(converters).map(i -> getTopConverter(i, nodeTree)).toArray();
+        resolvePhase.end(converters.length);
+        return result;
+    }
+
+    /**
+     * The PhaseListener interface is told when a lookup phase finishes: the resolve phase of each resolver and
+     * the build phases of the node tree and the cached parent tables.
+     */
+    public interface PhaseListener {
+
+        /**
+         * Called as a phase finishes, on the thread which started it.
+         *
+         * @param engine  PostOrderResolver, BatchResolver, NodeTree, ParentTableCache or MappedLabelStream
+         * @param phase  build or resolve
+         * @param durationNanos  the wall clock duration of the phase
+         * @param workCount  the converters resolved, or the nodes built
+         * @param allocatedBytes  the bytes the calling thread allocated, or -1 if unknown
+         */
+        void phaseEnded(String engine, String phase, long durationNanos, long workCount, long allocatedBytes);
+
+    }
+
+    /**
+     * Sets the listener for the phases, or null to stop measuring them.
+     *
+     * @param listener  the listener, or null
+     */
+    public static void setPhaseListener(PhaseListener listener) {
+        phaseListener = listener;
     }
 
     /**
@@ -71,6 +214,267 @@ public class Solution {
         }
     }
 
+    /**
+     * The PostOrderResolver class computes the parent of a label in a post-order labelled perfect
+     * binary tree by walking down from the root, without constructing any nodes.
+     */
+    private static final class PostOrderResolver {
+
+        /**
+         * The largest supported height, as the root label 2^h - 1 must fit in a long.
+         */
+        private static final int MAX_HEIGHT = 62;
+
+        private final long rootLabel;
+
+        public PostOrderResolver(int height) {
+            if (height < 1 || height > MAX_HEIGHT) {
+                throw new IllegalArgumentException("Height must be between 1 and " + MAX_HEIGHT + ": " + height);
+            }
+            this.rootLabel = (1L << height) - 1;
+        }
+
+        /**
+         * Returns the label of the given label's parent in O(height) time.
+         *
+         * @param label  the label to find the parent of
+         * @return  the parent's label, or -1 if the label is the root or does not exist in the tree
+         */
+        public long getParentLabel(long label) {
+            if (label < 1 || label >= rootLabel) return -1;
+            /*
+             * A subtree of 2^k - 1 nodes whose labels start after offset has its root at offset + size.
+             * Its left subtree holds the next size / 2 labels and its right subtree the size / 2 after those.
+             */
+            long offset = 0;
+            long size = rootLabel;
+            long parent = -1;
+            while (offset + size != label) {
+                parent = offset + size;
+                size >>= 1;
+                // Move into the right subtree if the label is past the end of the left subtree.
+                if (label > offset + size) offset += size;
+            }
+            return parent;
+        }
+
+    }
+
+    /**
+     * The MappedLabelStream class resolves a file of labels by mapping fixed-size chunks of the input
+     * and output files, so no labels are ever copied onto the heap.
+     */
+    private static final class MappedLabelStream {
+
+        private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+        private final PostOrderResolver resolver;
+
+        private final int chunkSize;
+
+        public MappedLabelStream(PostOrderResolver resolver, int chunkSize) {
+            if (chunkSize < 1 || chunkSize > Integer.MAX_VALUE / Long.BYTES) {
+                throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+            }
+            this.resolver = resolver;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * Resolves every label in the input file, writing the parents to the same positions in the output file.
+         *
+         * @param input  the file of labels
+         * @param output  the file to write the parent labels to
+         * @throws IOException  if a file cannot be mapped, the input ends in a partial label, or both are one file
+         */
+        public void resolve(Path input, Path output) throws IOException {
+            // Opening the output truncates it, which would destroy the labels before they were read.
+            if (Files.exists(output) && Files.isSameFile(input, output)) {
+                throw new IOException("Input and output are the same file: " + input);
+            }
+            try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long size = in.size();
+                if (size % Long.BYTES != 0) {
+                    throw new IOException("Input is not a whole number of labels: " + input);
+                }
+                long chunkBytes = (long) chunkSize * Long.BYTES;
+                Phase phase = Phase.start("MappedLabelStream", "resolve");
+                for (long position = 0; position < size; position += chunkBytes) {
+                    long length = Math.min(chunkBytes, size - position);
+                    // Mapping the output region beyond the end of the file grows it to fit.
+                    LongBuffer labels = in.map(FileChannel.MapMode.READ_ONLY, position, length).asLongBuffer();
+                    LongBuffer parents = out.map(FileChannel.MapMode.READ_WRITE, position, length).asLongBuffer();
+                    while (labels.hasRemaining()) parents.put(resolver.getParentLabel(labels.get()));
+                }
+                phase.end(size / Long.BYTES);
+            }
+        }
+
+    }
+
+    /**
+     * The ParentTableCache class holds the parent tables of recently used heights, evicting the least
+     * recently used tables once they hold more than the maximum number of bytes. Each table is built
+     * outside the lock by the first caller to ask for its height, while later callers wait on its future.
+     */
+    private static final class ParentTableCache {
+
+        /**
+         * The largest supported height, as the table holds an entry for every label up to 2^h - 1.
+         */
+        private static final int MAX_HEIGHT = 30;
+
+        private final Map<Integer, FutureTask<int[]>> tables = new LinkedHashMap<>(16, 0.75f, true);
+
+        private final long maxBytes;
+
+        private long bytes;
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        public ParentTableCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        /**
+         * Returns the parent table for the given height, building and caching it if necessary. A table
+         * larger than the whole cache is built for the caller but never kept.
+         *
+         * @param height  the height of the perfect binary tree
+         * @return  an array where index i holds the parent label of label i, or -1 if it has none
+         */
+        public int[] getParentTable(int height) {
+            if (height < 1 || height > MAX_HEIGHT) {
+                throw new IllegalArgumentException("Height must be between 1 and " + MAX_HEIGHT + ": " + height);
+            }
+            long tableBytes = (1L << height) * Integer.BYTES;
+            FutureTask<int[]> table;
+            synchronized (this) {
+                table = tables.get(height);
+                if (table != null) {
+                    hits.incrementAndGet();
+                } else {
+                    misses.incrementAndGet();
+                    table = new FutureTask<>(() -> buildParentTable(height));
+                    if (tableBytes <= maxBytes) {
+                        tables.put(height, table);
+                        bytes += tableBytes;
+                        evict();
+                    }
+                }
+            }
+            // Whichever caller reaches run first builds the table, as run does nothing once it has started.
+            table.run();
+            try {
+                return table.get();
+            } catch (ExecutionException e) {
+                synchronized (this) {
+                    if (tables.remove(height, table)) bytes -= tableBytes;
+                }
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) throw (Error) cause;
+                throw (RuntimeException) cause;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for the parent table of height " + height, e);
+            }
+        }
+
+        /**
+         * Removes the least recently used tables until the cache fits in its maximum number of bytes.
+         */
+        private void evict() {
+            Iterator<Map.Entry<Integer, FutureTask<int[]>>> eldest = tables.entrySet().iterator();
+            while (bytes > maxBytes) {
+                int height = eldest.next().getKey();
+                eldest.remove();
+                bytes -= (1L << height) * Integer.BYTES;
+            }
+        }
+
+        /**
+         * Builds the parent table for the given height.
+         *
+         * @param height  the height of the perfect binary tree
+         * @return  an array where index i holds the parent label of label i, or -1 if it has none
+         */
+        private int[] buildParentTable(int height) {
+            Phase phase = Phase.start("ParentTableCache", "build");
+            int rootLabel = (1 << height) - 1;
+            int[] table = new int[rootLabel + 1];
+            table[0] = -1;
+            fillParents(table, 0, rootLabel, -1);
+            phase.end(rootLabel);
+            return table;
+        }
+
+        /**
+         * Records the parent of every label in a subtree, in the same order as addNodes.
+         *
+         * @param table  the parent table to fill
+         * @param offset  the label preceding the first label in the subtree
+         * @param size  the number of labels in the subtree
+         * @param parent  the label of the subtree root's parent
+         */
+        private void fillParents(int[] table, int offset, int size, int parent) {
+            int label = offset + size;
+            table[label] = parent;
+            if (size == 1) return;
+            int half = size >> 1;
+            fillParents(table, offset + half, half, label);
+            fillParents(table, offset, half, label);
+        }
+
+    }
+
+    /**
+     * The BatchResolver class looks up the parents of a range of converters, splitting the
+     * range in half until it is small enough to resolve sequentially.
+     */
+    private static final class BatchResolver extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int SEQUENTIAL_THRESHOLD = 1 << 14;
+
+        private final int[] parentTable;
+
+        private final int[] converters;
+
+        private final int[] result;
+
+        private final int from;
+
+        private final int to;
+
+        public BatchResolver(int[] parentTable, int[] converters, int[] result, int from, int to) {
+            this.parentTable = parentTable;
+            this.converters = converters;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    int converter = converters[i];
+                    result[i] = converter > 0 && converter < parentTable.length ? parentTable[converter] : -1;
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchResolver(parentTable, converters, result, from, middle),
+                    new BatchResolver(parentTable, converters, result, middle, to));
+        }
+
+    }
+
     /**
      * The Node class represents a value in a perfect binary tree, containing the
      * value at that node and a reference to it's parent node.
@@ -95,4 +499,69 @@ public class Solution {
 
     }
 
+    /**
+     * The Phase class times a lookup phase for the listener, and is a shared no-op while there is none.
+     */
+    private static final class Phase {
+
+        private static final Phase INERT = new Phase(null, null, null);
+
+        private final PhaseListener listener;
+
+        private final String engine;
+
+        private final String name;
+
+        private final long startNanos;
+
+        private final long startBytes;
+
+        private Phase(PhaseListener listener, String engine, String name) {
+            this.listener = listener;
+            this.engine = engine;
+            this.name = name;
+            this.startBytes = listener == null ? 0 : getAllocatedBytes();
+            this.startNanos = listener == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Starts measuring a phase, if a listener is set.
+         */
+        public static Phase start(String engine, String name) {
+            PhaseListener listener = phaseListener;
+            return listener == null ? INERT : new Phase(listener, engine, name);
+        }
+
+        /**
+         * Reports the phase to the listener it started with, if any.
+         */
+        public void end(long workCount) {
+            if (listener == null) return;
+            long durationNanos = System.nanoTime() - startNanos;
+            long endBytes = getAllocatedBytes();
+            long allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+            listener.phaseEnded(engine, name, durationNanos, workCount, allocatedBytes);
+        }
+
+        private static long getAllocatedBytes() {
+            return ThreadAllocations.BEAN == null ? -1 :
+                    ThreadAllocations.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static final class ThreadAllocations {
+
+            private static final com.sun.management.ThreadMXBean BEAN = getBean();
+
+            private static com.sun.management.ThreadMXBean getBean() {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ?
+                        threads : null;
+            }
+
+        }
+
+    }
+
 }
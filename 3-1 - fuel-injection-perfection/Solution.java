@@ -1,7 +1,19 @@
-import java.util.Arrays;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class Solution {
 
+    private static volatile PhaseListener phaseListener;
+
     /**
      * Returns the least number of conversions to transform the number to 1
      *
@@ -13,43 +25,115 @@ public class Solution {
         return transformer.transformNumber(number);
     }
 
-    private static final class Transformer {
+    /**
+     * Returns the least number of conversions to transform the number to 1, by converting the number
+     * to binary and counting the conversions from its bits rather than performing them.
+     *
+     * @param number  the number to transform
+     * @return  an int representing the least number of conversions
+     */
+    public static int solutionFromBinary(String number) {
+        BinaryStepCounter stepCounter = new BinaryStepCounter();
+        Phase convertPhase = Phase.start("DecimalConverter", "convert");
+        BigInteger value = DecimalConverter.toBigInteger(number);
+        convertPhase.end(number.length());
+        Phase countPhase = Phase.start("BinaryStepCounter", "count");
+        int operations = stepCounter.countSteps(value);
+        countPhase.end(operations);
+        return operations;
+    }
 
-        private final StringOperator stringOperator = new StringOperator();
+    /**
+     * Returns the least number of conversions to transform each number in a range to 1, where index i of
+     * the result holds the count for from + i. Each count is built from the counts of the numbers about half
+     * its size, rather than transforming every number separately.
+     *
+     * @param from  the first number of the range, at least 1
+     * @param count  the number of numbers in the range
+     * @return  a byte array of the least number of conversions
+     * @throws IllegalArgumentException  if from is not positive, or the count is negative or runs past Long.MAX_VALUE
+     */
+    public static byte[] solutionRange(long from, int count) {
+        RangeStepCounter.checkRange(from, count);
+        byte[] results = new byte[count];
+        new RangeStepCounter(new ArrayStepTable(results), from, count).countSteps();
+        return results;
+    }
+
+    /**
+     * Writes the least number of conversions to transform each number in a range to 1 to a file, one byte
+     * per number starting with from. The file is memory mapped, so the range is not limited by the heap.
+     *
+     * @param from  the first number of the range, at least 1
+     * @param count  the number of numbers in the range
+     * @param output  the file to write the counts to, replaced if it exists
+     * @throws IOException  if the file cannot be mapped
+     * @throws IllegalArgumentException  if from is not positive, or the count is negative or runs past Long.MAX_VALUE
+     */
+    public static void solutionRange(long from, long count, Path output) throws IOException {
+        RangeStepCounter.checkRange(from, count);
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            new RangeStepCounter(new MappedStepTable(channel, count), from, count).countSteps();
+        }
+    }
+
+    /**
+     * The PhaseListener interface is told when a step count finishes: the decimal conversion, the step count of
+     * a single number and each doubling band of a range count.
+     */
+    public interface PhaseListener {
 
         /**
-         * Returns the least number of conversions to transform the number to 1
+         * Called as a phase finishes, on the thread which started it.
          *
-         * @param number  the number to transform
-         * @return  an int representing the least number of conversions
+         * @param engine  DecimalConverter, BinaryStepCounter, DigitBuffer or RangeStepCounter
+         * @param phase  convert, count, transform, or fill for the range bands after the first
+         * @param durationNanos  the wall clock duration of the phase
+         * @param workCount  the input digits converted, the operations counted, or the numbers in the band
+         * @param allocatedBytes  the bytes the calling thread allocated, not counting the band workers, or -1
          */
-        public int transformNumber(String number) {
-            return transformNumber(number, 0);
-        }
+        void phaseEnded(String engine, String phase, long durationNanos, long workCount, long allocatedBytes);
+
+    }
+
+    /**
+     * Sets the listener for the phases, or null to stop measuring them.
+     *
+     * @param listener  the listener, or null
+     */
+    public static void setPhaseListener(PhaseListener listener) {
+        phaseListener = listener;
+    }
+
+    private static final class Transformer {
 
         /**
          * Returns the least number of conversions to transform the number to 1
          *
          * @param number  the number to transform
-         * @param operations  the number of operations already performed
-         * @return  the number of operations to transform the number to 1
+         * @return  an int representing the least number of conversions
          */
-        private int transformNumber(String number, int operations) {
-            if (number.equals("1")) return operations;
-            // Retrieve the right-most digit in the number.
-            int leastSignificant = Integer.parseInt(String.valueOf(number.charAt(number.length() - 1)));
-            String converted;
-            // Determine if the number is odd.
-            if ((leastSignificant & 1) == 1) {
-                // If the number is odd, determine if we should increment or decrement, then perform the operation.
-                converted = shouldIncrement(number) ? stringOperator.addOneToString(number) :
-                        stringOperator.subtractOneFromString(number);
-            } else {
-                // if the number is even, divide the number by 2.
-                converted = stringOperator.divideStringByTwo(number);
+        public int transformNumber(String number) {
+            Phase phase = Phase.start("DigitBuffer", "transform");
+            DigitBuffer buffer = new DigitBuffer(number);
+            int operations = 0;
+            while (!buffer.isOne()) {
+                if (buffer.isOdd()) {
+                    // If the number is odd, determine if we should increment or decrement, then perform the operation.
+                    if (shouldIncrement(buffer)) {
+                        buffer.increment();
+                    } else {
+                        buffer.decrement();
+                    }
+                } else {
+                    // if the number is even, divide the number by 2.
+                    buffer.halve();
+                }
+                operations++;
             }
-            // Recursively transform the number.
-            return transformNumber(converted, ++operations);
+            phase.end(operations);
+            return operations;
         }
 
         /**
@@ -60,147 +144,500 @@ public class Solution {
          * @param number  the number to check whether to increment or decrement
          * @return  a boolean value representing if we should increment
          */
-        private boolean shouldIncrement(String number) {
+        private boolean shouldIncrement(DigitBuffer number) {
             // 3 does not follow the rule, should be decremented.
-            if (number.equals("3")) return false;
-            // Get the right-most digit.
-            char leastSignificant = number.charAt(number.length() - 1);
-            // If number equals 3 or 7, we should increment.
-            boolean shouldIncrement = Arrays.asList('3', '7').contains(leastSignificant);
-            if (number.length() == 1) return shouldIncrement;
-            // Get the second right-most digit.
-            int secondLeastSignificant = Integer.parseInt(String.valueOf(number.charAt(number.length() - 2)));
+            if (number.length() == 1 && number.digitFromRight(0) == 3) return false;
+            // If the right-most digit is 3 or 7, we should increment.
+            int leastSignificant = number.digitFromRight(0);
+            boolean shouldIncrement = leastSignificant == 3 || leastSignificant == 7;
             // If the second right-most digit is odd, we need to negate the result.
-            boolean opposite = (secondLeastSignificant & 1) == 1;
+            boolean opposite = (number.digitFromRight(1) & 1) == 1;
             return opposite != shouldIncrement;
         }
 
     }
 
     /**
-     * The StringOperator class performs basic math operations on integers represented in Strings.
+     * The DigitBuffer class holds a positive integer as decimal digits and performs the
+     * transformation operations on them in place, so no allocation happens after construction.
      */
-    private static final class StringOperator {
+    private static final class DigitBuffer {
 
         /**
-         * Returns a number divided by 2.
-         *
-         * @param number  a positive integer in String form
-         * @return  the number divided by 2
+         * The digits of the number, most significant first. One slot is left free in front of
+         * the number so an increment can carry into a new digit.
+         */
+        private final byte[] digits;
+
+        private int start;
+
+        public DigitBuffer(String number) {
+            digits = new byte[number.length() + 1];
+            start = 1;
+            for (int i = 0; i < number.length(); i++) {
+                int digit = Character.digit(number.charAt(i), 10);
+                if (digit < 0) throw new IllegalArgumentException("Not a positive integer: " + number);
+                digits[i + 1] = (byte) digit;
+            }
+            // Skip any leading zeros.
+            while (start < digits.length - 1 && digits[start] == 0) start++;
+            if (start == digits.length || digits[start] == 0) {
+                throw new IllegalArgumentException("Not a positive integer: " + number);
+            }
+        }
+
+        /**
+         * Returns the number of digits in the number.
          */
-        public String divideStringByTwo(String number) {
-            return divideStringByTwo(number, 0, 0, new StringBuilder());
+        public int length() {
+            return digits.length - start;
         }
 
         /**
-         * Returns a number incremented by 1.
+         * Returns the digit offset from the right-most digit by the index, or 0 past the left-most digit.
          *
-         * @param number  a positive integer in String form
-         * @return  the number incremented by 1
+         * @param index  the index of the digit, counting from the right starting at 0
+         * @return  the digit at the index
          */
-        public String addOneToString(String number) {
-            return addOneToString(number, 1, 1, new StringBuilder());
+        public int digitFromRight(int index) {
+            return index < length() ? digits[digits.length - 1 - index] : 0;
         }
 
         /**
-         * Returns a number decremented by 1.
-         *
-         * @param number  a positive integer in String form
-         * @return  the number decremented by 1
+         * Returns whether the number is 1.
          */
-        public String subtractOneFromString(String number) {
-            return subtractOneFromString(number, 1, 1, new StringBuilder());
+        public boolean isOne() {
+            return start == digits.length - 1 && digits[start] == 1;
         }
 
         /**
-         * Represents performing division by 2 by hand.
+         * Returns whether the number is odd.
+         */
+        public boolean isOdd() {
+            return (digits[digits.length - 1] & 1) == 1;
+        }
+
+        /**
+         * Divides the number by 2 by hand, from the left-most digit to the right-most digit.
+         */
+        public void halve() {
+            int carry = 0;
+            for (int i = start; i < digits.length; i++) {
+                // Place the carry to the left of the digit, then divide the value by 2 and floor the result.
+                int value = carry * 10 + digits[i];
+                digits[i] = (byte) (value >> 1);
+                carry = value & 1;
+            }
+            // The left-most digit may have become zero.
+            if (digits[start] == 0 && start < digits.length - 1) start++;
+        }
+
+        /**
+         * Adds 1 to the number by hand, carrying from the right-most digit.
+         */
+        public void increment() {
+            int i = digits.length - 1;
+            // Every 9 becomes 0 and carries the 1.
+            while (i >= start && digits[i] == 9) digits[i--] = 0;
+            if (i >= start) {
+                digits[i]++;
+                return;
+            }
+            /*
+             * The carry ran off the left-most digit, so the number grows into the free slot. Only odd numbers
+             * are incremented and the result is halved straight away, so the number never grows past the
+             * input's length plus one digit and the slot is always free here.
+             */
+            digits[--start] = 1;
+        }
+
+        /**
+         * Subtracts 1 from the number by hand, borrowing from the right-most digit.
+         */
+        public void decrement() {
+            int i = digits.length - 1;
+            // Every 0 becomes 9 and borrows the 1.
+            while (digits[i] == 0) digits[i--] = 9;
+            digits[i]--;
+            // The left-most digit may have become zero.
+            if (digits[start] == 0 && start < digits.length - 1) start++;
+        }
+
+    }
+
+    /**
+     * The BinaryStepCounter class counts the conversions Transformer would perform on a number by
+     * walking its bits from right to left, tracking the pending carry instead of rewriting the number.
+     */
+    private static final class BinaryStepCounter {
+
+        /**
+         * Returns the least number of conversions to transform the number to 1
          *
-         * @param number  the number to divide by 2
-         * @param carry  the number to carry from a previous operation
-         * @param index  the current index in the number to perform the operation
-         * @param accumulator  a StringBuilder to hold the result
-         * @return  a String, which is the number divided by 2
-         */
-        private String divideStringByTwo(String number, int carry, int index, StringBuilder accumulator) {
-            if (index == number.length()) return accumulator.toString();
-            // Get the digit at the given index. Place the carry to the left of that number.
-            int value = Integer.parseInt(String.format("%d%c", carry, number.charAt(index)));
-            // Divide the value by 2 and floor the result.
-            int result = value >> 1;
+         * @param number  the positive number to transform
+         * @return  an int representing the least number of conversions
+         */
+        public int countSteps(BigInteger number) {
+            if (number.signum() <= 0) throw new IllegalArgumentException("Not a positive integer: " + number);
+            int bitLength = number.bitLength();
             /*
-             * Append the result to the accumulator. Do not append if
-             * the accumulator is empty and the result equals zero.
+             * The remaining number is always the bits from the index upward plus the carry, which holds
+             * any pending increment or decrement and lies between -1 and 2.
              */
-            if (accumulator.length() > 0 || result != 0) accumulator.append(result);
-            // Get the carry by multiplying the result by 2 and subtracting it from the initial value.
-            carry = value - (result << 1);
-            // Recursively divide the number by 2.
-            return divideStringByTwo(number, carry, ++index, accumulator);
+            int index = 0;
+            int carry = 0;
+            int operations = 0;
+            while (true) {
+                // The value of the right-most position, including the carry.
+                int low = (number.testBit(index) ? 1 : 0) + carry;
+                if ((low & 1) == 0) {
+                    // If the number is even, divide the number by 2 by moving to the next bit.
+                    carry = low >> 1;
+                    index++;
+                } else {
+                    // The number is twice the bits above the index, plus the low value.
+                    boolean higherIsZero = index + 1 >= bitLength;
+                    boolean higherIsOne = index + 1 == bitLength - 1;
+                    if (higherIsZero && low == 1) return operations;
+                    // 3 does not follow the rule, should be decremented.
+                    boolean isThree = (higherIsZero && low == 3) || (higherIsOne && low == 1);
+                    // Increment when the number is 3 mod 4, else decrement.
+                    boolean threeModFour = (((number.testBit(index + 1) ? 2 : 0) + low) & 3) == 3;
+                    carry += threeModFour && !isThree ? 1 : -1;
+                }
+                operations++;
+            }
         }
 
         /**
-         * Represents performing addition by 1 by hand.
+         * Returns the least number of conversions to transform the number to 1
          *
-         * @param number  the number to increment
-         * @param carry  the number to carry from a previous operation
-         * @param index  the current index in the number to perform the operation, representing digits from the right
-         * @param accumulator  a StringBuilder to hold the result
-         * @return  a String, which is the number incremented by 1
-         */
-        private String addOneToString(String number, int carry, int index, StringBuilder accumulator) {
-            // Check if we are at the end of the number.
-            if (index == number.length() + 1) {
-                if (carry != 0) accumulator.append(carry);
-                // Reverse the result since the number was traversed from right to left.
-                return accumulator.reverse().toString();
-            }
-            // Get the digit offset from the right-most digit by the index.
-            char numberToCheck = number.charAt(number.length() - index);
-            // Increment the digit by the carry.
-            int value = Integer.parseInt(String.valueOf(numberToCheck)) + carry;
-            if (value > 9) {
-                // If the value is greater than 9, append zero and carry the 1.
-                accumulator.append(0);
-                carry = 1;
-            } else {
-                // Append the value to the result.
-                accumulator.append(value);
-                carry = 0;
-            }
-            // Recursively increment the number.
-            return addOneToString(number, carry, ++index, accumulator);
-        }
-
-        /**
-         * Represents performing subtraction by 1 by hand.
+         * @param number  the positive number to transform
+         * @return  an int representing the least number of conversions
+         */
+        public int countSteps(long number) {
+            if (number <= 0) throw new IllegalArgumentException("Not a positive integer: " + number);
+            int operations = 0;
+            // The number is treated as unsigned, so incrementing Long.MAX_VALUE still halves correctly.
+            while (number != 1) {
+                if ((number & 1) == 0) {
+                    number >>>= 1;
+                } else if (number == 3 || (number & 3) == 1) {
+                    number--;
+                } else {
+                    number++;
+                }
+                operations++;
+            }
+            return operations;
+        }
+
+    }
+
+    /**
+     * The RangeStepCounter class counts the conversions for every number in a range. A number n takes one
+     * more conversion than n / 2 when even, and two more than the better of (n - 1) / 2 and (n + 1) / 2 when
+     * odd, so the counts can be filled in from smaller numbers. The range is swept in bands [from * 2^k,
+     * from * 2^(k + 1)), as every number in a band only needs counts from the band before it, or the first
+     * number of its own band. The first band and the first number of each band are counted directly, and
+     * each band is split into blocks across the fork-join pool.
+     */
+    private static final class RangeStepCounter {
+
+        /**
+         * The number of counts filled by a single task, small enough for the block and the half sized
+         * block it reads from to stay in cache.
+         */
+        private static final int BLOCK_SIZE = 1 << 16;
+
+        private final StepTable table;
+
+        private final long from;
+
+        private final long to;
+
+        public RangeStepCounter(StepTable table, long from, long count) {
+            checkRange(from, count);
+            this.table = table;
+            this.from = from;
+            this.to = from + count;
+        }
+
+        /**
+         * Checks that a range starts at a positive number and ends within the long range, before a
+         * table is allocated or mapped for it.
          *
-         * @param number  the number to decrement
-         * @param borrow  the number to borrow from a previous operation
-         * @param index  the current index in the number to perform the operation, representing digits from the right
-         * @param accumulator  a StringBuilder to hold the result
-         * @return  a String, which is the number decremented by 1
-         */
-        private String subtractOneFromString(String number, int borrow, int index, StringBuilder accumulator) {
-            // Check if we are at the end of the number.
-            if (index == number.length() + 1) {
-                // Reverse the result since the number was traversed from right to left.
-                return accumulator.reverse().toString();
-            }
-            // Get the digit offset from the right-most digit by the index.
-            char numberToCheck = number.charAt(number.length() - index);
-            // Decrement the digit by the borrow.
-            int value = Integer.parseInt(String.valueOf(numberToCheck)) - borrow;
-            if (value < 0) {
-                // If the value is less than zero, append 9 and borrow the 1.
-                accumulator.append(9);
-                borrow = 1;
-            } else {
-                // Append the value to the result.
-                accumulator.append(value);
-                borrow = 0;
-            }
-            // Recursively decrement the number.
-            return subtractOneFromString(number, borrow, ++index, accumulator);
+         * @param from  the first number of the range
+         * @param count  the number of numbers in the range
+         */
+        public static void checkRange(long from, long count) {
+            if (from < 1) throw new IllegalArgumentException("Not a positive integer: " + from);
+            if (count < 0 || count > Long.MAX_VALUE - from) {
+                throw new IllegalArgumentException("Invalid count: " + count);
+            }
+        }
+
+        /**
+         * Fills the table with the count of every number in the range.
+         */
+        public void countSteps() {
+            BinaryStepCounter stepCounter = new BinaryStepCounter();
+            boolean isFirstBand = true;
+            for (long bandStart = from; bandStart < to; isFirstBand = false) {
+                long bandEnd = bandStart > (Long.MAX_VALUE >> 1) ? to : Math.min(to, bandStart << 1);
+                Phase phase = Phase.start("RangeStepCounter", isFirstBand ? "count" : "fill");
+                table.set(bandStart - from, stepCounter.countSteps(bandStart));
+                ForkJoinPool.commonPool().invoke(new BlockTask(bandStart + 1, bandEnd, isFirstBand));
+                phase.end(bandEnd - bandStart);
+                bandStart = bandEnd;
+            }
+        }
+
+        /**
+         * Fills the counts of the numbers in a block, from smaller counts or directly.
+         */
+        private void countBlock(long start, long end, boolean isDirect) {
+            if (isDirect) {
+                BinaryStepCounter stepCounter = new BinaryStepCounter();
+                for (long n = start; n < end; n++) table.set(n - from, stepCounter.countSteps(n));
+                return;
+            }
+            for (long n = start; n < end; n++) {
+                int steps;
+                if ((n & 1) == 0) {
+                    steps = table.get((n >>> 1) - from) + 1;
+                } else {
+                    // Written to avoid overflowing n + 1.
+                    steps = Math.min(table.get((n >>> 1) - from), table.get((n >>> 1) + 1 - from)) + 2;
+                }
+                table.set(n - from, steps);
+            }
+        }
+
+        /**
+         * The BlockTask class splits a range of numbers in half until it fits in a block.
+         */
+        private final class BlockTask extends RecursiveAction {
+
+            private static final long serialVersionUID = 1L;
+
+            private final long start;
+
+            private final long end;
+
+            private final boolean isDirect;
+
+            public BlockTask(long start, long end, boolean isDirect) {
+                this.start = start;
+                this.end = end;
+                this.isDirect = isDirect;
+            }
+
+            @Override
+            protected void compute() {
+                if (end - start <= BLOCK_SIZE) {
+                    countBlock(start, end, isDirect);
+                    return;
+                }
+                long middle = (start + end) >>> 1;
+                invokeAll(new BlockTask(start, middle, isDirect), new BlockTask(middle, end, isDirect));
+            }
+
+        }
+
+    }
+
+    /**
+     * The StepTable class stores one conversion count per number of a range, by index into the range.
+     */
+    private abstract static class StepTable {
+
+        abstract int get(long index);
+
+        abstract void set(long index, int steps);
+
+    }
+
+    /**
+     * The ArrayStepTable class stores the counts in a byte array on the heap.
+     */
+    private static final class ArrayStepTable extends StepTable {
+
+        private final byte[] steps;
+
+        public ArrayStepTable(byte[] steps) {
+            this.steps = steps;
+        }
+
+        @Override
+        int get(long index) {
+            return steps[(int) index];
+        }
+
+        @Override
+        void set(long index, int steps) {
+            this.steps[(int) index] = (byte) steps;
+        }
+
+    }
+
+    /**
+     * The MappedStepTable class stores the counts in a memory mapped file, mapped in regions as a single
+     * mapping is limited to 2^31 bytes.
+     */
+    private static final class MappedStepTable extends StepTable {
+
+        private static final int REGION_BITS = 30;
+
+        private final MappedByteBuffer[] regions;
+
+        public MappedStepTable(FileChannel channel, long count) throws IOException {
+            regions = new MappedByteBuffer[(int) ((count + (1L << REGION_BITS) - 1) >>> REGION_BITS)];
+            for (int i = 0; i < regions.length; i++) {
+                long position = (long) i << REGION_BITS;
+                long size = Math.min(1L << REGION_BITS, count - position);
+                regions[i] = channel.map(FileChannel.MapMode.READ_WRITE, position, size);
+            }
+        }
+
+        @Override
+        int get(long index) {
+            return regions[(int) (index >>> REGION_BITS)].get((int) index & ((1 << REGION_BITS) - 1));
+        }
+
+        @Override
+        void set(long index, int steps) {
+            regions[(int) (index >>> REGION_BITS)].put((int) index & ((1 << REGION_BITS) - 1), (byte) steps);
+        }
+
+    }
+
+    /**
+     * The DecimalConverter class converts decimal strings to BigIntegers by splitting the digits in
+     * half and recombining the halves with cached powers of ten, which is subquadratic in the number
+     * of digits since BigInteger switches to faster multiplication for large values.
+     */
+    private static final class DecimalConverter {
+
+        /**
+         * The number of digits which can be parsed directly into a long.
+         */
+        private static final int LONG_DIGITS = 18;
+
+        /**
+         * Returns the given decimal string as a BigInteger.
+         *
+         * @param number  a non-negative integer in String form
+         * @return  the number as a BigInteger
+         */
+        public static BigInteger toBigInteger(String number) {
+            for (int i = 0; i < number.length(); i++) {
+                if (Character.digit(number.charAt(i), 10) < 0) {
+                    throw new IllegalArgumentException("Not a positive integer: " + number);
+                }
+            }
+            if (number.isEmpty()) throw new IllegalArgumentException("Not a positive integer: " + number);
+            return toBigInteger(number, 0, number.length(), new ArrayList<>());
+        }
+
+        /**
+         * Converts a range of digits, where the right half is always a power of two digits long.
+         *
+         * @param number  the digits to convert
+         * @param from  the index of the left-most digit, inclusive
+         * @param to  the index of the right-most digit, exclusive
+         * @param powers  a list of cached powers where index k holds 10^(2^k)
+         * @return  the range of digits as a BigInteger
+         */
+        private static BigInteger toBigInteger(String number, int from, int to, List<BigInteger> powers) {
+            if (to - from <= LONG_DIGITS) return BigInteger.valueOf(Long.parseLong(number.substring(from, to)));
+            // Split off the largest power of two number of digits from the right.
+            int exponent = 31 - Integer.numberOfLeadingZeros(to - from - 1);
+            int middle = to - (1 << exponent);
+            BigInteger high = toBigInteger(number, from, middle, powers);
+            BigInteger low = toBigInteger(number, middle, to, powers);
+            return high.multiply(getPowerOfTen(exponent, powers)).add(low);
+        }
+
+        /**
+         * Returns 10^(2^exponent), squaring the largest cached power until it is reached.
+         *
+         * @param exponent  the base two logarithm of the power of ten's exponent
+         * @param powers  a list of cached powers where index k holds 10^(2^k)
+         * @return  10^(2^exponent)
+         */
+        private static BigInteger getPowerOfTen(int exponent, List<BigInteger> powers) {
+            if (powers.isEmpty()) powers.add(BigInteger.TEN);
+            while (powers.size() <= exponent) {
+                BigInteger last = powers.get(powers.size() - 1);
+                powers.add(last.multiply(last));
+            }
+            return powers.get(exponent);
+        }
+
+    }
+
+    /**
+     * The Phase class times a step count phase for the listener, and is a shared no-op while there is none.
+     */
+    private static final class Phase {
+
+        private static final Phase INERT = new Phase(null, null, null);
+
+        private final PhaseListener listener;
+
+        private final String engine;
+
+        private final String name;
+
+        private final long startNanos;
+
+        private final long startBytes;
+
+        private Phase(PhaseListener listener, String engine, String name) {
+            this.listener = listener;
+            this.engine = engine;
+            this.name = name;
+            this.startBytes = listener == null ? 0 : getAllocatedBytes();
+            this.startNanos = listener == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Starts measuring a phase, if a listener is set.
+         */
+        public static Phase start(String engine, String name) {
+            PhaseListener listener = phaseListener;
+            return listener == null ? INERT : new Phase(listener, engine, name);
+        }
+
+        /**
+         * Reports the phase to the listener it started with, if any.
+         */
+        public void end(long workCount) {
+            if (listener == null) return;
+            long durationNanos = System.nanoTime() - startNanos;
+            long endBytes = getAllocatedBytes();
+            long allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+            listener.phaseEnded(engine, name, durationNanos, workCount, allocatedBytes);
+        }
+
+        private static long getAllocatedBytes() {
+            return ThreadAllocations.BEAN == null ? -1 :
+                    ThreadAllocations.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static final class ThreadAllocations {
+
+            private static final com.sun.management.ThreadMXBean BEAN = getBean();
+
+            private static com.sun.management.ThreadMXBean getBean() {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ?
+                        threads : null;
+            }
+
         }
 
     }
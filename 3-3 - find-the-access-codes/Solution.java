@@ -1,5 +1,17 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
 public class Solution {
 
+    private static volatile PhaseListener phaseListener;
+
     /**
      * Returns the number of triples in the array of numbers.
      *
@@ -7,17 +19,619 @@ public class Solution {
      * @return the number of triples
      */
     public static int solution(int[] numbers) {
-        int result = 0;
-        for (int i = 0; i < numbers.length - 2; i++) {
-            for (int j = i + 1; j < numbers.length - 1; j++) {
-                for (int k = j + 1; k < numbers.length; k++) {
-                    // Check if j is divisible by i and k is divisible by j.
-                    if (numbers[j] % numbers[i] != 0 || numbers[k] % numbers[j] != 0) continue;
-                    result++;
+        return (int) solution(numbers, Strategy.QUADRATIC);
+    }
+
+    /**
+     * Returns the number of triples in the array of numbers, counted with the given strategy.
+     *
+     * @param numbers the array of numbers to check
+     * @param strategy the strategy to count the triples with
+     * @return the number of triples
+     */
+    public static long solution(int[] numbers, Strategy strategy) {
+        return strategy.countTriples(numbers);
+    }
+
+    /**
+     * Returns the number of triples in the buffer of numbers, from its position to its limit. The
+     * numbers are read in place, so the buffer may be a view of a memory mapped file.
+     *
+     * @param numbers the buffer of positive numbers to check
+     * @return the number of triples
+     * @throws IllegalArgumentException if a number is not positive or is larger than 2^30 - 1
+     */
+    public static long solution(IntBuffer numbers) {
+        SieveCounter sieveCounter = new SieveCounter(numbers);
+        return ForkJoinPool.commonPool().invoke(sieveCounter.newTask());
+    }
+
+    /**
+     * Returns the number of triples in a file of packed big-endian 32 bit numbers, which is memory
+     * mapped rather than read onto the heap.
+     *
+     * @param file the file of positive numbers to check
+     * @return the number of triples
+     * @throws IOException if the file cannot be mapped, or is not a whole number of ints
+     */
+    public static long solution(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() % Integer.BYTES != 0) {
+                throw new IOException("File is not a whole number of ints: " + file);
+            }
+            return solution(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer());
+        }
+    }
+
+    /**
+     * The PhaseListener interface is told when a triple count phase finishes: the pair or triple enumeration of
+     * each strategy, the sieve's index build, divisor sweep and triple sweep, and each append to a TripleCounter.
+     */
+    public interface PhaseListener {
+
+        /**
+         * Called as a phase finishes, on the thread which started it.
+         *
+         * @param engine CUBIC, QUADRATIC, SIEVE or TripleCounter
+         * @param phase enumerate, append, or for the sieve build, enumerate and reduce
+         * @param durationNanos the wall clock duration of the phase
+         * @param workCount the positions checked, the divisors visited, or the numbers indexed and values swept
+         * @param allocatedBytes the bytes the calling thread allocated, not counting the sieve's workers, or -1
+         */
+        void phaseEnded(String engine, String phase, long durationNanos, long workCount, long allocatedBytes);
+
+    }
+
+    /**
+     * Sets the listener for the phases, or null to stop measuring them.
+     *
+     * @param listener the listener, or null
+     */
+    public static void setPhaseListener(PhaseListener listener) {
+        phaseListener = listener;
+    }
+
+    /**
+     * The strategies available to count the triples.
+     */
+    public enum Strategy {
+
+        /**
+         * Checks every triple directly, in O(n^3) time.
+         */
+        CUBIC {
+            @Override
+            long countTriples(int[] numbers) {
+                Phase phase = Phase.start("CUBIC", "enumerate");
+                long result = 0;
+                for (int i = 0; i < numbers.length - 2; i++) {
+                    for (int j = i + 1; j < numbers.length - 1; j++) {
+                        for (int k = j + 1; k < numbers.length; k++) {
+                            // Check if j is divisible by i and k is divisible by j.
+                            if (numbers[j] % numbers[i] != 0 || numbers[k] % numbers[j] != 0) continue;
+                            result++;
+                        }
+                    }
                 }
+                // Every triple of positions is checked.
+                long n = numbers.length;
+                phase.end(n < 3 ? 0 : n * (n - 1) * (n - 2) / 6);
+                return result;
+            }
+        },
+
+        /**
+         * Counts the earlier divisors of every number, then sums those counts over every
+         * divisible pair, in O(n^2) time.
+         */
+        QUADRATIC {
+            @Override
+            long countTriples(int[] numbers) {
+                // Each number's count of earlier numbers which divide it is the number of triples it can be the middle of.
+                Phase phase = Phase.start("QUADRATIC", "enumerate");
+                int[] divisorCounts = new int[numbers.length];
+                long result = 0;
+                for (int k = 1; k < numbers.length; k++) {
+                    for (int j = 0; j < k; j++) {
+                        if (numbers[k] % numbers[j] != 0) continue;
+                        // j divides k, so k completes a triple with every earlier divisor of j.
+                        divisorCounts[k]++;
+                        result += divisorCounts[j];
+                    }
+                }
+                // Every pair of positions is checked.
+                phase.end((long) numbers.length * (numbers.length - 1) / 2);
+                return result;
+            }
+        },
+
+        /**
+         * Indexes the positions of every value and finds divisible pairs by sieving over
+         * multiples of each value, in parallel across the value range.
+         */
+        SIEVE {
+            @Override
+            long countTriples(int[] numbers) {
+                return solution(IntBuffer.wrap(numbers));
             }
+        };
+
+        /**
+         * Returns the number of triples in the array of numbers.
+         *
+         * @param numbers the array of numbers to check
+         * @return the number of triples
+         */
+        abstract long countTriples(int[] numbers);
+
+    }
+
+    /**
+     * The TripleCounter class keeps the number of triples in a stream of numbers as they are appended. For each
+     * value seen so far it holds how often the value occurred and how many pairs end at it, a pair being an
+     * earlier divisor followed by an occurrence of the value. Appending a number then only visits its divisors,
+     * never the earlier numbers. It is not thread safe.
+     */
+    public static final class TripleCounter {
+
+        private final ValueCounts valueCounts = new ValueCounts();
+
+        private final DivisorEnumerator divisors = new DivisorEnumerator();
+
+        private long tripleCount;
+
+        private int size;
+
+        /**
+         * Appends a number to the stream and returns the number of triples in the stream so far.
+         *
+         * @param number the positive number to append
+         * @return the number of triples including the new number
+         */
+        public long append(int number) {
+            if (number < 1) throw new IllegalArgumentException("Numbers must be positive: " + number);
+            long earlierDivisors = 0;
+            Phase phase = Phase.start("TripleCounter", "append");
+            int divisorCount = divisors.enumerate(number);
+            for (int i = 0; i < divisorCount; i++) {
+                int slot = valueCounts.find(divisors.get(i));
+                if (slot < 0) continue;
+                // Every pair ending at an earlier divisor is completed into a triple by the new number.
+                earlierDivisors += valueCounts.occurrences[slot];
+                tripleCount += valueCounts.pairs[slot];
+            }
+            valueCounts.add(number, earlierDivisors);
+            size++;
+            phase.end(divisorCount);
+            return tripleCount;
+        }
+
+        /**
+         * Returns the number of triples in the stream so far.
+         */
+        public long getTripleCount() {
+            return tripleCount;
         }
-        return result;
+
+        /**
+         * Returns the number of numbers appended so far.
+         */
+        public int size() {
+            return size;
+        }
+
+    }
+
+    /**
+     * The ValueCounts class is an open addressing hash map from positive values to the number of times each
+     * value occurred and the number of pairs ending at it.
+     */
+    private static final class ValueCounts {
+
+        private static final int EMPTY = 0;
+
+        private int[] keys = new int[1 << 10];
+
+        private long[] occurrences = new long[1 << 10];
+
+        private long[] pairs = new long[1 << 10];
+
+        private int size;
+
+        /**
+         * Returns the slot of the value, or -1 if it has not occurred.
+         *
+         * @param value the value to find
+         * @return the slot of the value
+         */
+        public int find(int value) {
+            int mask = keys.length - 1;
+            for (int i = hash(value) & mask ;; i = (i + 1) & mask) {
+                if (keys[i] == value) return i;
+                if (keys[i] == EMPTY) return -1;
+            }
+        }
+
+        /**
+         * Records another occurrence of the value, ending the given number of pairs.
+         *
+         * @param value the value that occurred
+         * @param pairCount the number of earlier divisors of the occurrence
+         */
+        public void add(int value, long pairCount) {
+            int mask = keys.length - 1;
+            for (int i = hash(value) & mask ;; i = (i + 1) & mask) {
+                if (keys[i] == value) {
+                    occurrences[i]++;
+                    pairs[i] += pairCount;
+                    return;
+                }
+                if (keys[i] == EMPTY) {
+                    keys[i] = value;
+                    occurrences[i] = 1;
+                    pairs[i] = pairCount;
+                    // Keep the load factor at or below one half.
+                    if (++size << 1 > keys.length) grow();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Doubles the capacity of the map, reinserting every value.
+         */
+        private void grow() {
+            int[] oldKeys = keys;
+            long[] oldOccurrences = occurrences, oldPairs = pairs;
+            keys = new int[oldKeys.length << 1];
+            occurrences = new long[oldKeys.length << 1];
+            pairs = new long[oldKeys.length << 1];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == EMPTY) continue;
+                int i = hash(oldKeys[j]) & mask;
+                while (keys[i] != EMPTY) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                occurrences[i] = oldOccurrences[j];
+                pairs[i] = oldPairs[j];
+            }
+        }
+
+        private static int hash(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+    }
+
+    /**
+     * The DivisorEnumerator class lists the divisors of a number from its prime factors. The smallest prime
+     * factor of each number is sieved lazily, doubling the sieve as larger numbers arrive, and numbers past the
+     * largest sieve are factored by trial division.
+     */
+    private static final class DivisorEnumerator {
+
+        private static final int MAX_SIEVE_LIMIT = 1 << 22;
+
+        private int[] smallestFactors = new int[0];
+
+        private int[] divisors = new int[64];
+
+        /**
+         * Lists the divisors of the number, in no particular order.
+         *
+         * @param number the positive number to find the divisors of
+         * @return the number of divisors, which are then read with get
+         */
+        public int enumerate(int number) {
+            if (number >= smallestFactors.length && smallestFactors.length <= MAX_SIEVE_LIMIT) {
+                sieve(Math.min(MAX_SIEVE_LIMIT, Math.max(smallestFactors.length << 1, number)));
+            }
+            divisors[0] = 1;
+            int count = 1;
+            for (int remaining = number; remaining > 1; ) {
+                int prime = getSmallestFactor(remaining);
+                int known = count;
+                // Each power of the prime multiplies every divisor found before this prime.
+                for (int power = prime; remaining % prime == 0; remaining /= prime, power *= prime) {
+                    if (count + known > divisors.length) divisors = Arrays.copyOf(divisors, divisors.length << 1);
+                    for (int i = 0; i < known; i++) divisors[count++] = divisors[i] * power;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns a divisor listed by the last call to enumerate.
+         */
+        public int get(int index) {
+            return divisors[index];
+        }
+
+        private int getSmallestFactor(int number) {
+            if (number < smallestFactors.length) return smallestFactors[number];
+            if (number % 2 == 0) return 2;
+            for (int factor = 3; factor <= number / factor; factor += 2) {
+                if (number % factor == 0) return factor;
+            }
+            return number;
+        }
+
+        /**
+         * Rebuilds the sieve to cover every number up to the limit.
+         */
+        private void sieve(int limit) {
+            smallestFactors = new int[limit + 1];
+            for (int i = 2; i <= limit; i++) {
+                if (smallestFactors[i] != 0) continue;
+                smallestFactors[i] = i;
+                for (long j = (long) i * i; j <= limit; j += i) {
+                    if (smallestFactors[(int) j] == 0) smallestFactors[(int) j] = i;
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The SieveCounter class counts triples by grouping the positions of the numbers by value. The
+     * numbers divisible by a value are then exactly its multiples, which are visited with a sieve
+     * instead of checking every pair. The value range is split into stripes of multiples so each
+     * worker only writes to the positions of its own stripe.
+     * <p>
+     * The numbers themselves are only read, so they may stay in a mapped file, but the counter builds its
+     * index on the heap: 4 bytes for every value up to the largest number, and 16 bytes for every number.
+     * A billion numbers below 2^30 therefore need about 20 GB of heap.
+     */
+    private static final class SieveCounter {
+
+        /**
+         * The largest value the sieve accepts, so the per value arrays and the sum of a multiple and its
+         * divisor stay within the int range.
+         */
+        public static final int MAX_VALUE = (1 << 30) - 1;
+
+        private final int maxValue;
+
+        /**
+         * The index of the first position of each value in the positions array. The positions of a
+         * value are stored in increasing order, from valueStarts[v] up to valueStarts[v + 1].
+         */
+        private final int[] valueStarts;
+
+        private final int[] positions;
+
+        /**
+         * The count of earlier numbers which divide each number, indexed like the positions array.
+         */
+        private final int[] divisorCounts;
+
+        /**
+         * The running sum of the divisor counts, such that index i holds the sum of the first i counts.
+         */
+        private final long[] divisorCountSums;
+
+        public SieveCounter(IntBuffer numbers) {
+            Phase phase = Phase.start("SIEVE", "build");
+            int offset = numbers.position();
+            int length = numbers.remaining();
+            int max = 0;
+            for (int i = 0; i < length; i++) {
+                int value = numbers.get(offset + i);
+                if (value < 1) throw new IllegalArgumentException("Numbers must be positive: " + value);
+                if (value > MAX_VALUE) {
+                    throw new IllegalArgumentException("Numbers must be at most " + MAX_VALUE + " to sieve: " + value);
+                }
+                max = Math.max(max, value);
+            }
+            maxValue = max;
+            // Count each value, then turn the counts into end indices.
+            valueStarts = new int[maxValue + 2];
+            for (int i = 0; i < length; i++) valueStarts[numbers.get(offset + i)]++;
+            for (int v = 1; v < valueStarts.length; v++) valueStarts[v] += valueStarts[v - 1];
+            // Filling each value's positions from its end backwards leaves its start index behind.
+            positions = new int[length];
+            for (int i = length - 1; i >= 0; i--) positions[--valueStarts[numbers.get(offset + i)]] = i;
+            divisorCounts = new int[length];
+            divisorCountSums = new long[length + 1];
+            phase.end(length);
+        }
+
+        /**
+         * Returns a task which counts the triples in the common fork-join pool.
+         */
+        public RecursiveTask<Long> newTask() {
+            return new RecursiveTask<Long>() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected Long compute() {
+                    int threshold = getStripeThreshold();
+                    // The first sweep counts each number's earlier divisors.
+                    Phase enumeratePhase = Phase.start("SIEVE", "enumerate");
+                    new StripeTask(1, maxValue + 1, threshold, false).invoke();
+                    enumeratePhase.end(maxValue);
+                    Phase reducePhase = Phase.start("SIEVE", "reduce");
+                    for (int i = 0; i < divisorCounts.length; i++) {
+                        divisorCountSums[i + 1] = divisorCountSums[i] + divisorCounts[i];
+                    }
+                    // The second sweep adds the earlier divisor count of every divisor before each number.
+                    long result = new StripeTask(1, maxValue + 1, threshold, true).invoke();
+                    reducePhase.end(maxValue);
+                    return result;
+                }
+            };
+        }
+
+        /**
+         * Returns the width of value stripes to sweep sequentially, leaving several stripes per worker.
+         */
+        private int getStripeThreshold() {
+            return Math.max(1 << 10, (maxValue + 1) / (ForkJoinPool.getCommonPoolParallelism() * 8));
+        }
+
+        /**
+         * Sweeps the multiples in a stripe of values, pairing the positions of each divisor with the
+         * positions of its multiple.
+         *
+         * @param from the smallest multiple in the stripe, inclusive
+         * @param to the largest multiple in the stripe, exclusive
+         * @param countTriples false to count the earlier divisors of each number, true to count triples
+         * @return the number of triples ending in the stripe, or 0 when counting divisors
+         */
+        private long sweepStripe(int from, int to, boolean countTriples) {
+            long result = 0;
+            for (int divisor = 1; divisor < to; divisor++) {
+                int divisorStart = valueStarts[divisor], divisorEnd = valueStarts[divisor + 1];
+                if (divisorStart == divisorEnd) continue;
+                // Find the first multiple of the divisor within the stripe.
+                int first = (from + divisor - 1) / divisor * divisor;
+                for (int multiple = first; multiple < to; multiple += divisor) {
+                    int multipleStart = valueStarts[multiple], multipleEnd = valueStarts[multiple + 1];
+                    // Walk both position lists together, galloping over the divisor positions before each multiple.
+                    for (int i = multipleStart, j = divisorStart; i < multipleEnd; i++) {
+                        j = findFirstAtOrAfter(positions[i], j, divisorEnd);
+                        if (countTriples) {
+                            result += divisorCountSums[j] - divisorCountSums[divisorStart];
+                        } else {
+                            divisorCounts[i] += j - divisorStart;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Returns the index of the first position at or after the target within a sorted range, searching
+         * with doubling steps from the start of the range and then in halves. Finding the divisor positions
+         * before every position of a multiple then costs O(m log(d / m)) for m multiple positions and d
+         * divisor positions, instead of O(m + d), so a value occurring many times is not walked per multiple.
+         *
+         * @param target the position to find
+         * @param from the start of the range, inclusive
+         * @param to the end of the range, exclusive
+         * @return the index of the first position at or after the target, or to if there is none
+         */
+        private int findFirstAtOrAfter(int target, int from, int to) {
+            if (from == to || positions[from] >= target) return from;
+            // positions[low] is always before the target.
+            int low = from, step = 1;
+            while (low + step < to && positions[low + step] < target) {
+                low += step;
+                step <<= 1;
+            }
+            int high = Math.min(low + step, to);
+            while (high - low > 1) {
+                int middle = (low + high) >>> 1;
+                if (positions[middle] < target) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return high;
+        }
+
+        /**
+         * The StripeTask class splits a range of values in half until it is narrow enough to sweep.
+         */
+        private final class StripeTask extends RecursiveTask<Long> {
+
+            private static final long serialVersionUID = 1L;
+
+            private final int from;
+
+            private final int to;
+
+            private final int threshold;
+
+            private final boolean countTriples;
+
+            public StripeTask(int from, int to, int threshold, boolean countTriples) {
+                this.from = from;
+                this.to = to;
+                this.threshold = threshold;
+                this.countTriples = countTriples;
+            }
+
+            @Override
+            protected Long compute() {
+                if (to - from <= threshold) return sweepStripe(from, to, countTriples);
+                int middle = (from + to) >>> 1;
+                StripeTask right = new StripeTask(middle, to, threshold, countTriples);
+                right.fork();
+                long left = new StripeTask(from, middle, threshold, countTriples).compute();
+                return left + right.join();
+            }
+
+        }
+
+    }
+
+    /**
+     * The Phase class times a triple count phase for the listener, and is a shared no-op while there is none.
+     */
+    private static final class Phase {
+
+        private static final Phase INERT = new Phase(null, null, null);
+
+        private final PhaseListener listener;
+
+        private final String engine;
+
+        private final String name;
+
+        private final long startNanos;
+
+        private final long startBytes;
+
+        private Phase(PhaseListener listener, String engine, String name) {
+            this.listener = listener;
+            this.engine = engine;
+            this.name = name;
+            this.startBytes = listener == null ? 0 : getAllocatedBytes();
+            this.startNanos = listener == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Starts measuring a phase, if a listener is set.
+         */
+        public static Phase start(String engine, String name) {
+            PhaseListener listener = phaseListener;
+            return listener == null ? INERT : new Phase(listener, engine, name);
+        }
+
+        /**
+         * Reports the phase to the listener it started with, if any.
+         */
+        public void end(long workCount) {
+            if (listener == null) return;
+            long durationNanos = System.nanoTime() - startNanos;
+            long endBytes = getAllocatedBytes();
+            long allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+            listener.phaseEnded(engine, name, durationNanos, workCount, allocatedBytes);
+        }
+
+        private static long getAllocatedBytes() {
+            return ThreadAllocations.BEAN == null ? -1 :
+                    ThreadAllocations.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static final class ThreadAllocations {
+
+            private static final com.sun.management.ThreadMXBean BEAN = getBean();
+
+            private static com.sun.management.ThreadMXBean getBean() {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ?
+                        threads : null;
+            }
+
+        }
+
     }
 
 }
@@ -1,11 +1,13 @@
-import java.awt.Point;
-import java.util.List;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.ArrayList;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.IntStream;
 
 public class Solution {
 
+    private static volatile PhaseListener phaseListener;
+
     /**
      * Returns the exact number of distinct directions that a laser can be fired on the given grid and hit the endpoint
      *
@@ -17,10 +19,219 @@ public class Solution {
      */
     public static int solution(int[] dimensions, int[] startPoint, int[] endPoint, int distance) {
         PathFinder pathFinder = new PathFinder(dimensions[0], dimensions[1], distance,
-                new Point(startPoint[0], startPoint[1]), new Point(endPoint[0], endPoint[1]));
+                startPoint[0], startPoint[1], endPoint[0], endPoint[1]);
         return pathFinder.getValidDirections();
     }
 
+    /**
+     * Returns the exact number of distinct directions that a laser can be fired on the given grid and hit the endpoint,
+     * where the nearest mirrored position along each direction decides whether the laser hits the endpoint or the start
+     *
+     * @param dimensions  the dimensions of the grid
+     * @param startPoint  the starting point of the laser to be fired
+     * @param endPoint  the ending point to try and hit
+     * @param distance  the maximum distance the laser can travel
+     * @return  the number of distinct directions that the laser can be fired
+     */
+    public static int solutionByDistance(int[] dimensions, int[] startPoint, int[] endPoint, int distance) {
+        ImageSweeper imageSweeper = new ImageSweeper(dimensions[0], dimensions[1], distance,
+                startPoint[0], startPoint[1], endPoint[0], endPoint[1]);
+        return imageSweeper.getValidDirections();
+    }
+
+    /**
+     * Returns the same number of directions as solutionByDistance, sweeping stripes of mirrored grid
+     * columns in parallel and merging the nearest position found along each direction. Each call sweeps in
+     * a pool of its own, which is shut down before the call returns, so the parallelism is not shared with
+     * the common pool and no worker threads outlive the call
+     *
+     * @param dimensions  the dimensions of the grid
+     * @param startPoint  the starting point of the laser to be fired
+     * @param endPoint  the ending point to try and hit
+     * @param distance  the maximum distance the laser can travel
+     * @param parallelism  the number of threads to sweep with, at least 1
+     * @return  the number of distinct directions that the laser can be fired
+     */
+    public static int solutionInParallel(int[] dimensions, int[] startPoint, int[] endPoint, int distance,
+                                         int parallelism) {
+        ImageSweeper imageSweeper = new ImageSweeper(dimensions[0], dimensions[1], distance,
+                startPoint[0], startPoint[1], endPoint[0], endPoint[1]);
+        int minColumn = imageSweeper.getMinColumn(), maxColumn = imageSweeper.getMaxColumn();
+        // Leave several stripes per thread so threads finishing early can take work from the others.
+        int stripeWidth = Math.max(1, (maxColumn - minColumn + 1) / (parallelism * 4));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // Only the calling thread's allocations are attributed to the phase, not the pool's.
+            Phase phase = Phase.start("StripeSweep", "sweep");
+            DirectionMap claims = pool.invoke(new StripeSweep(imageSweeper, minColumn, maxColumn, stripeWidth));
+            phase.end(claims.size());
+            return claims.countEndClaims();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the same number of directions as solutionByDistance, counting the mirrored end positions in
+     * closed form rather than visiting each of them, which suits extreme distances
+     *
+     * @param dimensions  the dimensions of the grid
+     * @param startPoint  the starting point of the laser to be fired
+     * @param endPoint  the ending point to try and hit
+     * @param distance  the maximum distance the laser can travel
+     * @return  the number of distinct directions that the laser can be fired
+     */
+    public static long solutionByCounting(int[] dimensions, int[] startPoint, int[] endPoint, int distance) {
+        LatticeCounter latticeCounter = new LatticeCounter(dimensions[0], dimensions[1], distance,
+                startPoint[0], startPoint[1], endPoint[0], endPoint[1]);
+        return latticeCounter.getValidDirections();
+    }
+
+    /**
+     * Returns the same number of directions as solutionByDistance, splitting the circle of directions into
+     * angular sectors and sweeping one sector at a time, so only one sector's directions are held at once
+     *
+     * @param dimensions  the dimensions of the grid
+     * @param startPoint  the starting point of the laser to be fired
+     * @param endPoint  the ending point to try and hit
+     * @param distance  the maximum distance the laser can travel
+     * @param sectors  the number of sectors to sweep, rounded up to an even number of at most 8192
+     * @return  the number of distinct directions that the laser can be fired
+     */
+    public static long solutionInSectors(int[] dimensions, int[] startPoint, int[] endPoint, int distance,
+                                         int sectors) {
+        ImageSweeper imageSweeper = new ImageSweeper(dimensions[0], dimensions[1], distance,
+                startPoint[0], startPoint[1], endPoint[0], endPoint[1]);
+        SectorSweeper sectorSweeper = new SectorSweeper(imageSweeper, sectors);
+        return sectorSweeper.getValidDirections();
+    }
+
+    /**
+     * Returns the same number of directions as solutionByDistance, sweeping as few angular sectors as keep
+     * the directions held by each sector within a memory budget
+     *
+     * @param dimensions  the dimensions of the grid
+     * @param startPoint  the starting point of the laser to be fired
+     * @param endPoint  the ending point to try and hit
+     * @param distance  the maximum distance the laser can travel
+     * @param maxBytes  the approximate number of bytes the directions of a sector may occupy
+     * @return  the number of distinct directions that the laser can be fired
+     */
+    public static long solutionWithinMemory(int[] dimensions, int[] startPoint, int[] endPoint, int distance,
+                                            long maxBytes) {
+        // Roughly two mirrored positions per mirrored grid within the circle, each claiming at most one direction.
+        double positions = 2 * Math.PI * distance * distance / ((double) dimensions[0] * dimensions[1]);
+        double sectors = Math.ceil(positions * DirectionMap.MAX_BYTES_PER_CLAIM / Math.max(1, maxBytes));
+        return solutionInSectors(dimensions, startPoint, endPoint, distance,
+                (int) Math.min(SectorSweeper.MAX_SECTORS, sectors));
+    }
+
+    /**
+     * The PhaseListener interface is told when a direction search phase finishes: the ring scan, each image
+     * sweep, the room's blocked directions and queries, and the lattice counter's sieve and count.
+     */
+    public interface PhaseListener {
+
+        /**
+         * Called as a phase finishes, on the thread which started it.
+         *
+         * @param engine  PathFinder, ImageSweeper, StripeSweep, SectorSweeper, Room or LatticeCounter
+         * @param phase  scan, sweep, build, query, or count residues or count positions
+         * @param durationNanos  the wall clock duration of the phase
+         * @param workCount  the rings scanned, the directions claimed, or the sieve limit and residues counted
+         * @param allocatedBytes  the bytes the calling thread allocated, not counting stripe workers, or -1
+         */
+        void phaseEnded(String engine, String phase, long durationNanos, long workCount, long allocatedBytes);
+
+    }
+
+    /**
+     * Sets the listener for the phases, or null to stop measuring them.
+     *
+     * @param listener  the listener, or null
+     */
+    public static void setPhaseListener(PhaseListener listener) {
+        phaseListener = listener;
+    }
+
+    /**
+     * The Room class answers many queries against the same grid and starting point. The nearest mirrored
+     * start position along each direction is found once, up to the largest distance to be queried, and
+     * each query then only sweeps the mirrored end positions.
+     */
+    public static final class Room {
+
+        private final int width;
+
+        private final int height;
+
+        private final int startX;
+
+        private final int startY;
+
+        private final int maxDistance;
+
+        /**
+         * The nearest mirrored start position along each direction within the maximum distance, which
+         * blocks any end position further along the same direction.
+         */
+        private final DirectionMap blocked = new DirectionMap();
+
+        /**
+         * Creates a room, finding every direction blocked by a mirrored start position.
+         *
+         * @param dimensions  the dimensions of the grid
+         * @param startPoint  the starting point of the laser to be fired
+         * @param maxDistance  the largest distance that will be queried
+         */
+        public Room(int[] dimensions, int[] startPoint, int maxDistance) {
+            this.width = dimensions[0];
+            this.height = dimensions[1];
+            this.startX = startPoint[0];
+            this.startY = startPoint[1];
+            this.maxDistance = maxDistance;
+            Phase phase = Phase.start("Room", "build");
+            new ImageSweeper(width, height, maxDistance, startX, startY, startX, startY).sweepPositions(false, blocked);
+            phase.end(blocked.size());
+        }
+
+        /**
+         * Returns the number of distinct directions that a laser can be fired in this room and hit the endpoint,
+         * matching solutionByDistance
+         *
+         * @param endPoint  the ending point to try and hit
+         * @param distance  the maximum distance the laser can travel, no larger than the room's maximum distance
+         * @return  the number of distinct directions that the laser can be fired
+         */
+        public int solution(int[] endPoint, int distance) {
+            if (distance > maxDistance) {
+                throw new IllegalArgumentException("Distance " + distance + " exceeds the room's maximum of " + maxDistance);
+            }
+            Phase phase = Phase.start("Room", "query");
+            DirectionMap claims = new DirectionMap();
+            new ImageSweeper(width, height, distance, startX, startY, endPoint[0], endPoint[1]).sweepPositions(true, claims);
+            phase.end(claims.size());
+            return claims.countClaimsNearerThan(blocked);
+        }
+
+        /**
+         * Returns the number of distinct directions for each pair of endpoint and distance, answering the
+         * queries in parallel
+         *
+         * @param endPoints  the ending points to try and hit
+         * @param distances  the maximum distance for each ending point
+         * @return  the number of distinct directions that the laser can be fired for each query
+         */
+        public int[] solution(int[][] endPoints, int[] distances) {
+            if (endPoints.length != distances.length) {
+                throw new IllegalArgumentException("Expected a distance for each of the " + endPoints.length + " endpoints");
+            }
+            return IntStream.range(0, endPoints.length).parallel()
+                    .map(i -> solution(endPoints[i], distances[i])).toArray();
+        }
+
+    }
+
     /**
      * The PathFinder class will simulate the laser being fired in different directions
      */
@@ -30,20 +241,26 @@ public class Solution {
 
         private final int height;
 
-        private final int maxDistance;
+        private final long maxDistanceSquared;
+
+        private final int startX;
 
-        private final Point startPoint;
+        private final int startY;
 
-        private final Point endPoint;
+        private final int endX;
 
-        private final Set<Point> checked = new HashSet<>();
+        private final int endY;
 
-        public PathFinder(int width, int height, int maxDistance, Point startPoint, Point endPoint) {
+        private final DirectionSet checked = new DirectionSet();
+
+        public PathFinder(int width, int height, int maxDistance, int startX, int startY, int endX, int endY) {
             this.width = width;
             this.height = height;
-            this.startPoint = startPoint;
-            this.endPoint = endPoint;
-            this.maxDistance = maxDistance;
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+            this.maxDistanceSquared = (long) maxDistance * maxDistance;
         }
 
         /**
@@ -57,11 +274,15 @@ public class Solution {
              * increment the index until an invalid index is found. The index represents the number of times
              * the laser bounces off of the x or y walls. This can be simulated by mirroring the grid on the given wall.
              */
+            Phase phase = Phase.start("PathFinder", "scan");
             for (int count = 0, index = 0 ;; index++) {
-                // Generate all mirrored positions for the given index and filter based on validity.
-                long validForIndex = getPositionsForIndex(index).stream().filter(this::isValidPosition).count();
+                // Check all mirrored positions for the given index.
+                int validForIndex = countValidPositionsForIndex(index);
                 // If none are found for the given index, then we have reached the maximum distance.
-                if (validForIndex == 0) return count;
+                if (validForIndex == 0) {
+                    phase.end(index + 1);
+                    return count;
+                }
                 count += validForIndex;
             }
         }
@@ -74,82 +295,978 @@ public class Solution {
          * @return  an integer value which of the Greatest Common Divisor of the two numbers
          */
         private int findDivisor(int a, int b) {
-            if (a == 0) return Math.abs(b);
-            return findDivisor(b % a, a);
+            while (a != 0) {
+                int remainder = b % a;
+                b = a;
+                a = remainder;
+            }
+            return Math.abs(b);
         }
 
         /**
-         * Returns the distance between the given points
+         * Returns the squared distance from the start point to the given position
          *
-         * @param p1  a point to check
-         * @param p2  a point to check
-         * @return  the distance between the two points
+         * @param x  the x coordinate of the position
+         * @param y  the y coordinate of the position
+         * @return  the squared distance between the two points
          */
-        private double getDistance(Point p1, Point p2) {
-            return Math.sqrt(Math.pow(p2.x - p1.x, 2) + Math.pow(p2.y - p1.y, 2));
+        private long getDistanceSquared(int x, int y) {
+            long dx = x - startX, dy = y - startY;
+            return dx * dx + dy * dy;
         }
 
         /**
          * Returns whether the given positions are valid positions and the laser can reach the end position
          *
-         * @param positions  an array of positions, with the start position at index 0 and end position at index 1
+         * @param mirroredStartX  the x coordinate of the mirrored start position
+         * @param mirroredStartY  the y coordinate of the mirrored start position
+         * @param mirroredEndX  the x coordinate of the mirrored end position
+         * @param mirroredEndY  the y coordinate of the mirrored end position
          * @return  true or false if the positions are valid positions
          */
-        private boolean isValidPosition(Point[] positions) {
+        private boolean isValidPosition(int mirroredStartX, int mirroredStartY, int mirroredEndX, int mirroredEndY) {
             // Add the start position to the set of checked positions as we cannot hit it.
-            Point start = positions[0];
-            int[] startSlope = getSlopeFor(start);
-            checked.add(new Point(startSlope[0], startSlope[1]));
+            checked.add(getDirectionFor(mirroredStartX, mirroredStartY));
             // Check whether the end position's slope is distinct and validate it's distance.
-            Point end = positions[1];
-            int[] endSlope = getSlopeFor(end);
-            return checked.add(new Point(endSlope[0], endSlope[1])) &&
-                    getDistance(startPoint, end) <= maxDistance;
+            return checked.add(getDirectionFor(mirroredEndX, mirroredEndY)) &&
+                    getDistanceSquared(mirroredEndX, mirroredEndY) <= maxDistanceSquared;
         }
 
         /**
          * Generates the slope from the start position to the given position
          *
-         * @param point  the end position to check
-         * @return  an integer array representing the slope, with run at index 0 and rise at index 1
+         * @param x  the x coordinate of the end position to check
+         * @param y  the y coordinate of the end position to check
+         * @return  the slope packed into a long, with run in the high half and rise in the low half
          */
-        private int[] getSlopeFor(Point point) {
-            int dx = point.x - startPoint.x;
-            int dy = point.y - startPoint.y;
-            if (dx == 0 && dy == 0) return new int[]{0,0};
+        private long getDirectionFor(int x, int y) {
+            int dx = x - startX;
+            int dy = y - startY;
+            if (dx == 0 && dy == 0) return DirectionSet.pack(0, 0);
             // Find the greatest common divisor, as all slopes must be reduced to their lowest form.
             int divisor = findDivisor(dy, dx);
-            return new int[]{dx / divisor, dy / divisor};
+            return DirectionSet.pack(dx / divisor, dy / divisor);
         }
 
         /**
-         * Returns a list of position arrays representing a mirrored start position and end position
+         * Returns the number of valid mirrored start and end positions for the given index
          *
          * @param index  an integer representing how many times the laser can bounce off of the x or y wall
-         * @return  a list of position arrays, with the arrays containing the mirrored start position at index 0
-         *          and the mirrored end position at index 1
+         * @return  the number of mirrored end positions which are valid
          */
-        private List<Point[]> getPositionsForIndex(int index) {
-            List<Point[]> positions = new ArrayList<>();
-            // Loop through all of the possible index values.
+        private int countValidPositionsForIndex(int index) {
+            int valid = 0;
+            // Loop through the very outer mirrored grids for the index.
             for (int x = -index; x <= index; x++) {
-                for (int y = -index; y <= index; y++) {
-                    // Only considered the very outer mirrored grids.
-                    if (x != -index && x != index && y != -index && y != index) continue;
+                boolean outerColumn = x == -index || x == index;
+                // Inner columns only have an outer grid at the top and the bottom.
+                int step = outerColumn || index == 0 ? 1 : index << 1;
+                for (int y = -index; y <= index; y += step) {
                     // Generate the base x & y coordinates of the mirrored grid.
                     int baseX = width * x, baseY = height * y;
                     // If the x or y index is odd, the grid must be flipped in relation to that axis.
-                    int startX = ((x & 1) == 1) ? width - startPoint.x : startPoint.x;
-                    int startY = ((y & 1) == 1) ? height - startPoint.y : startPoint.y;
-                    int endX = ((x & 1) == 1) ? width - endPoint.x : endPoint.x;
-                    int endY = ((y & 1) == 1) ? height - endPoint.y : endPoint.y;
-                    positions.add(new Point[] {
-                            new Point(baseX + startX, baseY + startY),
-                            new Point(baseX + endX, baseY + endY)
-                    });
+                    int mirroredStartX = baseX + (((x & 1) == 1) ? width - startX : startX);
+                    int mirroredStartY = baseY + (((y & 1) == 1) ? height - startY : startY);
+                    int mirroredEndX = baseX + (((x & 1) == 1) ? width - endX : endX);
+                    int mirroredEndY = baseY + (((y & 1) == 1) ? height - endY : endY);
+                    if (isValidPosition(mirroredStartX, mirroredStartY, mirroredEndX, mirroredEndY)) valid++;
                 }
             }
-            return positions;
+            return valid;
+        }
+
+    }
+
+    /**
+     * The ImageSweeper class visits only the mirrored start and end positions within the maximum distance,
+     * column by column, and lets the nearest position along each direction claim it. The laser hits the
+     * endpoint in a direction exactly when the nearest position along it is a mirrored end position.
+     */
+    private static final class ImageSweeper {
+
+        private final int width;
+
+        private final int height;
+
+        private final int maxDistance;
+
+        private final long maxDistanceSquared;
+
+        private final int startX;
+
+        private final int startY;
+
+        private final int endX;
+
+        private final int endY;
+
+        public ImageSweeper(int width, int height, int maxDistance, int startX, int startY, int endX, int endY) {
+            this.width = width;
+            this.height = height;
+            this.maxDistance = maxDistance;
+            this.maxDistanceSquared = (long) maxDistance * maxDistance;
+            this.startX = startX;
+            this.startY = startY;
+            this.endX = endX;
+            this.endY = endY;
+        }
+
+        /**
+         * Returns the maximum number of distinct directions that a laser can be fired
+         *
+         * @return  integer value of the maximum directions
+         */
+        public int getValidDirections() {
+            Phase phase = Phase.start("ImageSweeper", "sweep");
+            DirectionMap claims = new DirectionMap();
+            sweepColumns(getMinColumn(), getMaxColumn(), claims);
+            phase.end(claims.size());
+            return claims.countEndClaims();
+        }
+
+        /**
+         * Returns the index of the left-most mirrored grid column which can be within the maximum distance.
+         */
+        public int getMinColumn() {
+            return Math.floorDiv(startX - maxDistance, width);
+        }
+
+        /**
+         * Returns the index of the right-most mirrored grid column which can be within the maximum distance.
+         */
+        public int getMaxColumn() {
+            return Math.floorDiv(startX + maxDistance, width);
+        }
+
+        /**
+         * Claims the direction of every mirrored start and end position within the maximum distance
+         * in the given range of mirrored grid columns.
+         *
+         * @param minColumn  the index of the first mirrored grid column, inclusive
+         * @param maxColumn  the index of the last mirrored grid column, inclusive
+         * @param claims  the map to record the nearest position along each direction in
+         */
+        public void sweepColumns(int minColumn, int maxColumn, DirectionMap claims) {
+            for (int x = minColumn; x <= maxColumn; x++) {
+                // If the x index is odd, the grid must be flipped in relation to that axis.
+                boolean flipX = (x & 1) == 1;
+                int baseX = width * x;
+                sweepColumn(baseX + (flipX ? width - startX : startX), startY, false, claims);
+                sweepColumn(baseX + (flipX ? width - endX : endX), endY, true, claims);
+            }
+        }
+
+        /**
+         * Claims the direction of every mirrored start position, or every mirrored end position, within the
+         * maximum distance.
+         *
+         * @param isEnd  true to sweep the mirrored end positions, false to sweep the mirrored start positions
+         * @param claims  the map to record the nearest position along each direction in
+         */
+        public void sweepPositions(boolean isEnd, DirectionMap claims) {
+            int pointX = isEnd ? endX : startX, pointY = isEnd ? endY : startY;
+            for (int x = getMinColumn(); x <= getMaxColumn(); x++) {
+                sweepColumn(width * x + (((x & 1) == 1) ? width - pointX : pointX), pointY, isEnd, claims);
+            }
+        }
+
+        /**
+         * Claims the direction of every mirrored position within the maximum distance which shares an x coordinate.
+         *
+         * @param mirroredX  the x coordinate of the mirrored positions
+         * @param pointY  the y coordinate of the position in the base grid
+         * @param isEnd  true for mirrored end positions, false for mirrored start positions
+         * @param claims  the map to record the nearest position along each direction in
+         */
+        private void sweepColumn(int mirroredX, int pointY, boolean isEnd, DirectionMap claims) {
+            long dx = mirroredX - startX;
+            long remaining = maxDistanceSquared - dx * dx;
+            if (remaining < 0) return;
+            int maxDy = (int) squareRoot(remaining);
+            sweepRows(mirroredX, pointY, isEnd, -maxDy, maxDy, claims);
+        }
+
+        /**
+         * Claims the direction of every mirrored position within the maximum distance, or every mirrored end
+         * position, whose direction lies in a sector of one half of the circle. A sector holds the directions
+         * whose slope dy / dx lies between two bounds, each a numerator over SectorSweeper.SLOPE_DENOMINATOR.
+         * Directions are measured after turning the left half of the circle onto the right half, and the
+         * vertical direction of each half belongs to its sector without an upper bound.
+         *
+         * @param isLeft  true for the half of the circle with negative dx, false for the half with positive dx
+         * @param lowerSlope  the inclusive lower bound of the slopes, or Long.MIN_VALUE for no bound
+         * @param upperSlope  the exclusive upper bound of the slopes, or Long.MAX_VALUE for no bound
+         * @param claims  the map to record the nearest position along each direction in
+         */
+        public void sweepSector(boolean isLeft, long lowerSlope, long upperSlope, DirectionMap claims) {
+            for (int x = getMinColumn(); x <= getMaxColumn(); x++) {
+                boolean flipX = (x & 1) == 1;
+                int baseX = width * x;
+                sweepSectorColumn(baseX + (flipX ? width - startX : startX), startY, false,
+                        isLeft, lowerSlope, upperSlope, claims);
+                sweepSectorColumn(baseX + (flipX ? width - endX : endX), endY, true,
+                        isLeft, lowerSlope, upperSlope, claims);
+            }
+        }
+
+        /**
+         * Claims the direction of every mirrored position sharing an x coordinate whose direction lies in the
+         * sector, finding the range of rises within the sector exactly rather than checking each position.
+         */
+        private void sweepSectorColumn(int mirroredX, int pointY, boolean isEnd, boolean isLeft,
+                                       long lowerSlope, long upperSlope, DirectionMap claims) {
+            long dx = mirroredX - startX;
+            if (isLeft ? dx > 0 : dx < 0) return;
+            long remaining = maxDistanceSquared - dx * dx;
+            if (remaining < 0) return;
+            int maxDy = (int) squareRoot(remaining);
+            // The run and range of rises after turning the left half onto the right half.
+            long run = Math.abs(dx);
+            long minRise, maxRise;
+            if (run == 0) {
+                // Straight up is the steepest direction of the half.
+                if (upperSlope != Long.MAX_VALUE) return;
+                minRise = 1;
+                maxRise = maxDy;
+            } else {
+                minRise = lowerSlope == Long.MIN_VALUE ? -maxDy :
+                        Math.max(-maxDy, -Math.floorDiv(-lowerSlope * run, SectorSweeper.SLOPE_DENOMINATOR));
+                maxRise = upperSlope == Long.MAX_VALUE ? maxDy :
+                        Math.min(maxDy, -Math.floorDiv(-upperSlope * run, SectorSweeper.SLOPE_DENOMINATOR) - 1);
+            }
+            if (minRise > maxRise) return;
+            if (isLeft) {
+                sweepRows(mirroredX, pointY, isEnd, (int) -maxRise, (int) -minRise, claims);
+            } else {
+                sweepRows(mirroredX, pointY, isEnd, (int) minRise, (int) maxRise, claims);
+            }
+        }
+
+        /**
+         * Claims the direction of every mirrored position sharing an x coordinate whose rise from the start
+         * lies in the given range, which must be within the maximum distance.
+         *
+         * @param mirroredX  the x coordinate of the mirrored positions
+         * @param pointY  the y coordinate of the position in the base grid
+         * @param isEnd  true for mirrored end positions, false for mirrored start positions
+         * @param minDy  the smallest rise to claim, inclusive
+         * @param maxDy  the largest rise to claim, inclusive
+         * @param claims  the map to record the nearest position along each direction in
+         */
+        private void sweepRows(int mirroredX, int pointY, boolean isEnd, int minDy, int maxDy, DirectionMap claims) {
+            long dx = mirroredX - startX;
+            // Only the mirrored grids overlapping the range of rises can hold positions within it.
+            int minY = Math.floorDiv(startY + minDy, height);
+            int maxY = Math.floorDiv(startY + maxDy, height);
+            for (int y = minY; y <= maxY; y++) {
+                int mirroredY = height * y + (((y & 1) == 1) ? height - pointY : pointY);
+                int dy = mirroredY - startY;
+                if (dy < minDy || dy > maxDy || (dx == 0 && dy == 0)) continue;
+                int divisor = findDivisor((int) dx, dy);
+                claims.claim(DirectionSet.pack((int) dx / divisor, dy / divisor), dx * dx + (long) dy * dy, isEnd);
+            }
+        }
+
+        /**
+         * Returns the Greatest Common Divisor for the given integers
+         *
+         * @param a  an integer to check
+         * @param b  an integer to check
+         * @return  an integer value which of the Greatest Common Divisor of the two numbers
+         */
+        private static int findDivisor(int a, int b) {
+            a = Math.abs(a);
+            b = Math.abs(b);
+            while (a != 0) {
+                int remainder = b % a;
+                b = a;
+                a = remainder;
+            }
+            return b;
+        }
+
+        /**
+         * Returns the largest integer whose square does not exceed the given value.
+         */
+        private static long squareRoot(long value) {
+            long root = (long) Math.sqrt(value);
+            while (root * root > value) root--;
+            while ((root + 1) * (root + 1) <= value) root++;
+            return root;
+        }
+
+    }
+
+    /**
+     * The LatticeCounter class counts directions without visiting most mirrored positions. Relative to the start
+     * point, the mirrored positions of a point fall into four parity classes, one per combination of (x & 1) and
+     * (y & 1) in getPositionsForIndex. Each class is a lattice (2 * width * a + cx, 2 * height * b + cy).
+     * <p>
+     * Whether k times a reduced direction (rx, ry) lands in a class only depends on rx and ry modulo the periods
+     * 2 * width and 2 * height, so the nearest position along every direction with the same residues is the same
+     * multiple k of it, and is found by solving congruences. For small rooms the count is a sum over residues of
+     * the directions whose nearest position is an end position, where the reduced directions within the distance
+     * divided by k are counted with Mobius sums over lattice columns. For large rooms, where there are more
+     * residues than positions, only the positions with a gcd of at least 2 are visited, as every position whose
+     * offsets have a gcd of 1 claims its direction and is counted with the same Mobius sums.
+     */
+    private static final class LatticeCounter {
+
+        private final int xPeriod;
+
+        private final int yPeriod;
+
+        private final int maxDistance;
+
+        private final long maxDistanceSquared;
+
+        /**
+         * The x and y offsets of each class of mirrored end positions from the start point.
+         */
+        private final int[][] endClasses;
+
+        /**
+         * The x and y offsets of each class of mirrored start positions from the start point.
+         */
+        private final int[][] startClasses;
+
+        private int[] smallestPrimeFactors;
+
+        private byte[] mobius;
+
+        public LatticeCounter(int width, int height, int maxDistance, int startX, int startY, int endX, int endY) {
+            if (startX == endX && startY == endY) throw new IllegalArgumentException("The end point is the start point");
+            this.xPeriod = width << 1;
+            this.yPeriod = height << 1;
+            this.maxDistance = maxDistance;
+            this.maxDistanceSquared = (long) maxDistance * maxDistance;
+            this.endClasses = getClasses(endX - startX, -endX - startX, endY - startY, -endY - startY);
+            this.startClasses = getClasses(0, -startX << 1, 0, -startY << 1);
+        }
+
+        /**
+         * Returns the maximum number of distinct directions that a laser can be fired
+         *
+         * @return  the number of directions
+         */
+        public long getValidDirections() {
+            Phase buildPhase = Phase.start("LatticeCounter", "build");
+            buildSieve(maxDistance);
+            buildPhase.end(maxDistance);
+            // Compare the number of residues, each costing a pass over the divisors, with the number of positions.
+            double residueCost = 4.0 * xPeriod * yPeriod * maxDistance;
+            double positionCost = Math.PI * maxDistanceSquared * endClasses.length / ((double) xPeriod * yPeriod);
+            boolean byResidues = residueCost < positionCost;
+            Phase countPhase = Phase.start("LatticeCounter", byResidues ? "count residues" : "count positions");
+            long directions = byResidues ? countByResidues() : countByVisiting();
+            countPhase.end(byResidues ? (long) xPeriod * yPeriod : maxDistance);
+            return directions;
+        }
+
+        /**
+         * Returns the number of directions, summed over the residues of the reduced directions.
+         */
+        private long countByResidues() {
+            long directions = 0;
+            for (int rx = 0; rx < xPeriod; rx++) {
+                for (int ry = 0; ry < yPeriod; ry++) {
+                    // The direction is only hit if an end position comes before every start position.
+                    long endMultiple = findSmallestMultiple(rx, ry, endClasses);
+                    if (endMultiple >= findSmallestMultiple(rx, ry, startClasses)) continue;
+                    long radiusSquared = maxDistanceSquared / endMultiple / endMultiple;
+                    if (radiusSquared > 0) directions += countReducedDirections(rx, ry, radiusSquared);
+                }
+            }
+            return directions;
+        }
+
+        /**
+         * Returns the number of reduced directions with the given residues within the radius, as the Mobius sum
+         * over d of mu(d) times the number of directions with both offsets divisible by d.
+         *
+         * @param rx  the residue of the run modulo the x period
+         * @param ry  the residue of the rise modulo the y period
+         * @param radiusSquared  the squared radius
+         * @return  the number of reduced directions
+         */
+        private long countReducedDirections(int rx, int ry, long radiusSquared) {
+            long radius = squareRoot(radiusSquared);
+            long directions = 0;
+            for (int divisor = 1; divisor <= radius; divisor++) {
+                if (mobius[divisor] == 0) continue;
+                long[] columns = combine(new long[]{ rx, xPeriod }, new long[]{ 0, divisor });
+                long[] rows = columns == null ? null : combine(new long[]{ ry, yPeriod }, new long[]{ 0, divisor });
+                if (rows == null) continue;
+                long count = 0;
+                for (long x = -radius + Math.floorMod(columns[0] + radius, columns[1]); x <= radius; x += columns[1]) {
+                    long maxY = squareRoot(radiusSquared - x * x);
+                    long firstRow = -maxY + Math.floorMod(rows[0] + maxY, rows[1]);
+                    if (firstRow <= maxY) count += (maxY - firstRow) / rows[1] + 1;
+                }
+                // The origin has no direction, but is divisible by everything.
+                if (columns[0] == 0 && rows[0] == 0) count--;
+                directions += mobius[divisor] * count;
+            }
+            return directions;
+        }
+
+        /**
+         * Returns the number of directions, visiting only the end positions whose offsets have a gcd of at least 2.
+         */
+        private long countByVisiting() {
+            long directions = 0;
+            // Count the end positions with a gcd of 1 by inclusion and exclusion over their common divisors.
+            for (int divisor = 1; divisor <= maxDistance; divisor++) {
+                if (mobius[divisor] == 0) continue;
+                long divisible = 0;
+                for (int[] endClass : endClasses) divisible += visitDivisible(endClass, divisor, false);
+                directions += mobius[divisor] * divisible;
+            }
+            // Visit the end positions with a larger gcd under their smallest prime factor.
+            for (int prime = 2; prime <= maxDistance; prime++) {
+                if (smallestPrimeFactors[prime] != prime) continue;
+                for (int[] endClass : endClasses) directions += visitDivisible(endClass, prime, true);
+            }
+            return directions;
+        }
+
+        /**
+         * Returns the distinct classes for the given offsets, as two offsets are the same class if they are
+         * congruent modulo the period.
+         */
+        private int[][] getClasses(int x1, int x2, int y1, int y2) {
+            int[] xs = Math.floorMod(x1 - x2, xPeriod) == 0 ? new int[]{ x1 } : new int[]{ x1, x2 };
+            int[] ys = Math.floorMod(y1 - y2, yPeriod) == 0 ? new int[]{ y1 } : new int[]{ y1, y2 };
+            int[][] classes = new int[xs.length * ys.length][];
+            for (int i = 0; i < xs.length; i++) {
+                for (int j = 0; j < ys.length; j++) classes[i * ys.length + j] = new int[]{ xs[i], ys[j] };
+            }
+            return classes;
+        }
+
+        /**
+         * Visits the positions of a class within the maximum distance whose offsets are both divisible by the
+         * divisor, stepping only through the lattice columns and rows which satisfy the divisibility.
+         *
+         * @param positionClass  the x and y offsets of the class
+         * @param divisor  the divisor of both offsets
+         * @param checkPositions  false to count every position, true to count only the positions whose gcd has the
+         *                        divisor as its smallest prime factor and which claim their direction
+         * @return  the number of positions counted
+         */
+        private long visitDivisible(int[] positionClass, int divisor, boolean checkPositions) {
+            int cx = positionClass[0], cy = positionClass[1];
+            long[] columns = solveLinear(xPeriod, -cx, divisor);
+            long[] rows = solveLinear(yPeriod, -cy, divisor);
+            if (columns == null || rows == null) return 0;
+            long count = 0;
+            long minColumn = ceilDiv(-maxDistance - cx, xPeriod), maxColumn = Math.floorDiv(maxDistance - cx, xPeriod);
+            for (long a = minColumn + Math.floorMod(columns[0] - minColumn, columns[1]); a <= maxColumn; a += columns[1]) {
+                long dx = xPeriod * a + cx;
+                long maxDy = squareRoot(maxDistanceSquared - dx * dx);
+                long minRow = ceilDiv(-maxDy - cy, yPeriod), maxRow = Math.floorDiv(maxDy - cy, yPeriod);
+                long firstRow = minRow + Math.floorMod(rows[0] - minRow, rows[1]);
+                if (firstRow > maxRow) continue;
+                if (!checkPositions) {
+                    count += (maxRow - firstRow) / rows[1] + 1;
+                    continue;
+                }
+                for (long b = firstRow; b <= maxRow; b += rows[1]) {
+                    long dy = yPeriod * b + cy;
+                    int divisorOfOffsets = (int) findDivisor(dx, dy);
+                    if (divisorOfOffsets == 0 || smallestPrimeFactors[divisorOfOffsets] != divisor) continue;
+                    long rx = dx / divisorOfOffsets, ry = dy / divisorOfOffsets;
+                    // Count the position if no start or end position comes before it along its direction.
+                    if (Math.min(findSmallestMultiple(rx, ry, startClasses), findSmallestMultiple(rx, ry, endClasses))
+                            >= divisorOfOffsets) count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Returns the smallest k of at least 1 such that k times the given direction lands in one of the classes.
+         *
+         * @param rx  the run of the reduced direction
+         * @param ry  the rise of the reduced direction
+         * @param classes  the x and y offsets of the classes
+         * @return  the smallest multiple, or Long.MAX_VALUE if no multiple lands in any class
+         */
+        private long findSmallestMultiple(long rx, long ry, int[][] classes) {
+            long smallest = Long.MAX_VALUE;
+            for (int[] positionClass : classes) {
+                // Solve k * rx = cx modulo the x period and k * ry = cy modulo the y period together.
+                long[] xSolution = solveLinear(rx, positionClass[0], xPeriod);
+                long[] ySolution = xSolution == null ? null : solveLinear(ry, positionClass[1], yPeriod);
+                long[] solution = ySolution == null ? null : combine(xSolution, ySolution);
+                if (solution == null) continue;
+                smallest = Math.min(smallest, solution[0] == 0 ? solution[1] : solution[0]);
+            }
+            return smallest;
+        }
+
+        /**
+         * Solves a * k = c modulo m for k.
+         *
+         * @return  the smallest non-negative solution and the modulus of all solutions, or null if there is none
+         */
+        private static long[] solveLinear(long a, long c, long m) {
+            a = Math.floorMod(a, m);
+            c = Math.floorMod(c, m);
+            long divisor = findDivisor(a, m);
+            if (c % divisor != 0) return null;
+            long modulus = m / divisor;
+            if (modulus == 1) return new long[]{ 0, 1 };
+            return new long[]{ Math.floorMod(c / divisor * inverse(a / divisor, modulus), modulus), modulus };
+        }
+
+        /**
+         * Combines k = r1 modulo m1 and k = r2 modulo m2 with the Chinese Remainder Theorem.
+         *
+         * @return  the smallest non-negative solution and the modulus of all solutions, or null if there is none
+         */
+        private static long[] combine(long[] first, long[] second) {
+            long divisor = findDivisor(first[1], second[1]);
+            long difference = second[0] - first[0];
+            if (difference % divisor != 0) return null;
+            long modulus = second[1] / divisor;
+            long steps = modulus == 1 ? 0 : Math.floorMod(difference / divisor % modulus * inverse(first[1] / divisor, modulus), modulus);
+            long lcm = first[1] * modulus;
+            return new long[]{ Math.floorMod(first[0] + first[1] * steps, lcm), lcm };
+        }
+
+        /**
+         * Returns the inverse of a modulo m, where a and m are coprime, with the extended Euclidean algorithm.
+         */
+        private static long inverse(long a, long m) {
+            long oldR = Math.floorMod(a, m), r = m, oldS = 1, s = 0;
+            while (r != 0) {
+                long quotient = oldR / r, next = oldR - quotient * r;
+                oldR = r;
+                r = next;
+                next = oldS - quotient * s;
+                oldS = s;
+                s = next;
+            }
+            return Math.floorMod(oldS, m);
+        }
+
+        /**
+         * Fills the smallest prime factor and the Mobius function of every integer up to the limit with a linear sieve.
+         */
+        private void buildSieve(int limit) {
+            smallestPrimeFactors = new int[limit + 1];
+            mobius = new byte[limit + 1];
+            int[] primes = new int[limit + 1];
+            int primeCount = 0;
+            if (limit >= 1) mobius[1] = 1;
+            for (int i = 2; i <= limit; i++) {
+                if (smallestPrimeFactors[i] == 0) {
+                    smallestPrimeFactors[i] = i;
+                    mobius[i] = -1;
+                    primes[primeCount++] = i;
+                }
+                for (int j = 0; j < primeCount && primes[j] <= smallestPrimeFactors[i] && (long) i * primes[j] <= limit; j++) {
+                    int multiple = i * primes[j];
+                    smallestPrimeFactors[multiple] = primes[j];
+                    mobius[multiple] = primes[j] == smallestPrimeFactors[i] ? 0 : (byte) -mobius[i];
+                }
+            }
+        }
+
+        private static long findDivisor(long a, long b) {
+            a = Math.abs(a);
+            b = Math.abs(b);
+            while (a != 0) {
+                long remainder = b % a;
+                b = a;
+                a = remainder;
+            }
+            return b;
+        }
+
+        private static long ceilDiv(long a, long b) {
+            return -Math.floorDiv(-a, b);
+        }
+
+        private static long squareRoot(long value) {
+            long root = (long) Math.sqrt(value);
+            while (root * root > value) root--;
+            while ((root + 1) * (root + 1) <= value) root++;
+            return root;
+        }
+
+    }
+
+    /**
+     * The StripeSweep class splits a range of mirrored grid columns in half until it is narrow enough to
+     * sweep into its own map, then merges the maps of both halves. As a merge keeps the nearest claim of
+     * each direction, the result does not depend on the order the stripes finish in.
+     */
+    @SuppressWarnings("serial")
+    private static final class StripeSweep extends RecursiveTask<DirectionMap> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ImageSweeper imageSweeper;
+
+        private final int minColumn;
+
+        private final int maxColumn;
+
+        private final int stripeWidth;
+
+        public StripeSweep(ImageSweeper imageSweeper, int minColumn, int maxColumn, int stripeWidth) {
+            this.imageSweeper = imageSweeper;
+            this.minColumn = minColumn;
+            this.maxColumn = maxColumn;
+            this.stripeWidth = stripeWidth;
+        }
+
+        @Override
+        protected DirectionMap compute() {
+            if (maxColumn - minColumn < stripeWidth) {
+                DirectionMap claims = new DirectionMap();
+                imageSweeper.sweepColumns(minColumn, maxColumn, claims);
+                return claims;
+            }
+            int middle = (minColumn + maxColumn) >> 1;
+            StripeSweep right = new StripeSweep(imageSweeper, middle + 1, maxColumn, stripeWidth);
+            right.fork();
+            DirectionMap left = new StripeSweep(imageSweeper, minColumn, middle, stripeWidth).compute();
+            DirectionMap rightClaims = right.join();
+            // Merge the smaller map into the larger one.
+            if (left.size() < rightClaims.size()) {
+                rightClaims.claimAll(left);
+                return rightClaims;
+            }
+            left.claimAll(rightClaims);
+            return left;
+        }
+
+    }
+
+    /**
+     * The SectorSweeper class sweeps the mirrored positions one angular sector at a time. Each half of the
+     * circle is split into sectors by slope, with bounds rounded to numerators over a fixed denominator so
+     * every test is exact integer arithmetic. Scaling a position along its direction does not change which
+     * side of a bound it lies on, so every position along a direction is swept in the same sector, and each
+     * sector's nearest claims are final. Only one sector's directions are held at a time.
+     */
+    private static final class SectorSweeper {
+
+        /**
+         * The most sectors swept, which keeps the slope bounds distinct and their products within a long.
+         */
+        public static final int MAX_SECTORS = 1 << 13;
+
+        public static final long SLOPE_DENOMINATOR = 1 << 16;
+
+        private final ImageSweeper imageSweeper;
+
+        /**
+         * The slope bounds of the sectors of a half circle, with Long.MIN_VALUE and Long.MAX_VALUE at the ends.
+         */
+        private final long[] slopeBounds;
+
+        public SectorSweeper(ImageSweeper imageSweeper, int sectors) {
+            this.imageSweeper = imageSweeper;
+            int halfSectors = (Math.max(2, Math.min(MAX_SECTORS, sectors)) + 1) / 2;
+            slopeBounds = new long[halfSectors + 1];
+            slopeBounds[0] = Long.MIN_VALUE;
+            slopeBounds[halfSectors] = Long.MAX_VALUE;
+            // Bound the sectors at equal angles from straight down to straight up.
+            for (int k = 1; k < halfSectors; k++) {
+                double angle = Math.PI * k / halfSectors - Math.PI / 2;
+                long bound = Math.round(Math.tan(angle) * SLOPE_DENOMINATOR);
+                slopeBounds[k] = k > 1 ? Math.max(slopeBounds[k - 1] + 1, bound) : bound;
+            }
+        }
+
+        /**
+         * Returns the maximum number of distinct directions that a laser can be fired
+         *
+         * @return  long value of the maximum directions
+         */
+        public long getValidDirections() {
+            long directions = 0;
+            for (int half = 0; half < 2; half++) {
+                for (int k = 0; k + 1 < slopeBounds.length; k++) {
+                    Phase phase = Phase.start("SectorSweeper", "sweep");
+                    DirectionMap claims = new DirectionMap();
+                    imageSweeper.sweepSector(half == 1, slopeBounds[k], slopeBounds[k + 1], claims);
+                    phase.end(claims.size());
+                    directions += claims.countEndClaims();
+                }
+            }
+            return directions;
+        }
+
+    }
+
+    /**
+     * The DirectionMap class is an open addressing hash map from reduced directions, packed like
+     * DirectionSet, to the nearest mirrored position claiming each direction.
+     */
+    private static final class DirectionMap {
+
+        /**
+         * The most bytes a claim can occupy, as the two arrays take 16 bytes a slot and are between a quarter
+         * and a half full, doubling while the old arrays are still live.
+         */
+        public static final int MAX_BYTES_PER_CLAIM = 96;
+
+        private long[] keys = DirectionSet.newKeys(1 << 10);
+
+        /**
+         * The squared distance of each claim shifted left by one, with the lowest bit set for end positions.
+         * At equal distances a start position therefore takes precedence.
+         */
+        private long[] claims = new long[1 << 10];
+
+        private int size;
+
+        /**
+         * Claims the direction for a position, unless a nearer position has already claimed it.
+         *
+         * @param direction  the packed direction
+         * @param distanceSquared  the squared distance of the position
+         * @param isEnd  true for mirrored end positions, false for mirrored start positions
+         */
+        public void claim(long direction, long distanceSquared, boolean isEnd) {
+            put(direction, distanceSquared << 1 | (isEnd ? 1 : 0));
+        }
+
+        /**
+         * Claims every direction in the other map, keeping the nearer claim where both maps hold a direction.
+         *
+         * @param other  the map to merge into this map
+         */
+        public void claimAll(DirectionMap other) {
+            for (int i = 0; i < other.keys.length; i++) {
+                if (other.keys[i] != DirectionSet.EMPTY) put(other.keys[i], other.claims[i]);
+            }
+        }
+
+        /**
+         * Returns the number of directions claimed.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the number of directions whose claim in this map is nearer than their claim in the other map,
+         * counting directions the other map has not claimed.
+         *
+         * @param other  the map to compare claims with
+         * @return  the number of directions this map claims first
+         */
+        public int countClaimsNearerThan(DirectionMap other) {
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != DirectionSet.EMPTY && claims[i] < other.get(keys[i])) count++;
+            }
+            return count;
+        }
+
+        /**
+         * Returns the claim of the direction, or Long.MAX_VALUE if it has not been claimed.
+         *
+         * @param direction  the packed direction
+         * @return  the claim of the direction
+         */
+        public long get(long direction) {
+            int mask = keys.length - 1;
+            for (int i = DirectionSet.hash(direction) & mask ;; i = (i + 1) & mask) {
+                if (keys[i] == direction) return claims[i];
+                if (keys[i] == DirectionSet.EMPTY) return Long.MAX_VALUE;
+            }
+        }
+
+        /**
+         * Returns the number of directions claimed by end positions.
+         */
+        public int countEndClaims() {
+            int count = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != DirectionSet.EMPTY && (claims[i] & 1) == 1) count++;
+            }
+            return count;
+        }
+
+        private void put(long direction, long claim) {
+            int mask = keys.length - 1;
+            for (int i = DirectionSet.hash(direction) & mask ;; i = (i + 1) & mask) {
+                long key = keys[i];
+                if (key == direction) {
+                    if (claim < claims[i]) claims[i] = claim;
+                    return;
+                }
+                if (key == DirectionSet.EMPTY) {
+                    keys[i] = direction;
+                    claims[i] = claim;
+                    // Keep the load factor at or below one half.
+                    if (++size << 1 > keys.length) grow();
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Doubles the capacity of the map, reinserting every claim.
+         */
+        private void grow() {
+            long[] oldKeys = keys, oldClaims = claims;
+            keys = DirectionSet.newKeys(oldKeys.length << 1);
+            claims = new long[oldKeys.length << 1];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == DirectionSet.EMPTY) continue;
+                int i = DirectionSet.hash(oldKeys[j]) & mask;
+                while (keys[i] != DirectionSet.EMPTY) i = (i + 1) & mask;
+                keys[i] = oldKeys[j];
+                claims[i] = oldClaims[j];
+            }
+        }
+
+    }
+
+    /**
+     * The DirectionSet class is an open addressing hash set of reduced directions, each packed into
+     * a long, so checking a direction never allocates.
+     */
+    private static final class DirectionSet {
+
+        /**
+         * Marks an empty slot. It cannot be a packed direction, as the run would be Integer.MIN_VALUE.
+         */
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys = newKeys(1 << 10);
+
+        private int size;
+
+        /**
+         * Returns the direction packed into a long.
+         *
+         * @param dx  the run of the direction
+         * @param dy  the rise of the direction
+         * @return  the packed direction
+         */
+        public static long pack(int dx, int dy) {
+            return ((long) dx << 32) | (dy & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Adds the direction to the set.
+         *
+         * @param direction  the packed direction
+         * @return  true if the direction was not already in the set
+         */
+        public boolean add(long direction) {
+            int mask = keys.length - 1;
+            for (int i = hash(direction) & mask ;; i = (i + 1) & mask) {
+                long key = keys[i];
+                if (key == direction) return false;
+                if (key == EMPTY) {
+                    keys[i] = direction;
+                    // Keep the load factor at or below one half.
+                    if (++size << 1 > keys.length) grow();
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Doubles the capacity of the set, reinserting every direction.
+         */
+        private void grow() {
+            long[] oldKeys = keys;
+            keys = newKeys(oldKeys.length << 1);
+            int mask = keys.length - 1;
+            for (long key : oldKeys) {
+                if (key == EMPTY) continue;
+                int i = hash(key) & mask;
+                while (keys[i] != EMPTY) i = (i + 1) & mask;
+                keys[i] = key;
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        private static int hash(long key) {
+            long mixed = key * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+
+    }
+
+    /**
+     * The Phase class times a direction search phase for the listener, and is a shared no-op while there is none.
+     */
+    private static final class Phase {
+
+        private static final Phase INERT = new Phase(null, null, null);
+
+        private final PhaseListener listener;
+
+        private final String engine;
+
+        private final String name;
+
+        private final long startNanos;
+
+        private final long startBytes;
+
+        private Phase(PhaseListener listener, String engine, String name) {
+            this.listener = listener;
+            this.engine = engine;
+            this.name = name;
+            this.startBytes = listener == null ? 0 : getAllocatedBytes();
+            this.startNanos = listener == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Starts measuring a phase, if a listener is set.
+         */
+        public static Phase start(String engine, String name) {
+            PhaseListener listener = phaseListener;
+            return listener == null ? INERT : new Phase(listener, engine, name);
+        }
+
+        /**
+         * Reports the phase to the listener it started with, if any.
+         */
+        public void end(long workCount) {
+            if (listener == null) return;
+            long durationNanos = System.nanoTime() - startNanos;
+            long endBytes = getAllocatedBytes();
+            long allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+            listener.phaseEnded(engine, name, durationNanos, workCount, allocatedBytes);
+        }
+
+        private static long getAllocatedBytes() {
+            return ThreadAllocations.BEAN == null ? -1 :
+                    ThreadAllocations.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static final class ThreadAllocations {
+
+            private static final com.sun.management.ThreadMXBean BEAN = getBean();
+
+            private static com.sun.management.ThreadMXBean getBean() {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ?
+                        threads : null;
+            }
+
         }
 
     }
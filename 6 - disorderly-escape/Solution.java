@@ -1,20 +1,36 @@
-import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
-import java.util.Deque;
+import java.util.List;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 // implementation based on https://franklinvp.github.io/2020-06-05-PolyaFooBar/
 
 public class Solution {
 
+    private static final CycleIndexCache CYCLE_INDICES = new CycleIndexCache(16);
+
+    private static final FactorialCache FACTORIALS = new FactorialCache();
+
+    private static volatile AnswerTable answerTable;
+
+    private static volatile PhaseListener phaseListener;
+
     /**
-     * Returns the count of unique states able to be produced from a grid
+     * Returns the count of unique states able to be produced from a grid. Grids with a side past 20 enumerate
+     * every partition of the smaller side, so the cost grows with p(smaller side) * larger side^2 and square grids
+     * much past 40 x 40 take minutes.
      *
      * @param width  the width of the grid
      * @param height  the height of the grid
@@ -22,10 +38,161 @@ public class Solution {
      * @return  the count of unique states
      */
     public static String solution(int width, int height, int size) {
+        AnswerTable table = answerTable;
+        if (table != null) {
+            String answer = table.lookup(width, height, size);
+            if (answer != null) return answer;
+        }
+        return computeUniqueStates(width, height, size);
+    }
+
+    /**
+     * Returns the count of unique states able to be produced from a grid for each of the sizes. Grids with both
+     * sides at most 20 build their cycle index polynomial once and evaluate it per size.
+     *
+     * @param width  the width of the grid
+     * @param height  the height of the grid
+     * @param sizes  the max values of any single integer in the grid
+     * @return  the counts of unique states, in the same order
+     */
+    public static String[] solution(int width, int height, int[] sizes) {
+        if (Math.max(width, height) > CycleIndex.MAX_SIZE) {
+            return Arrays.stream(sizes).mapToObj(size -> solution(width, height, size)).toArray(String[]::new);
+        }
+        CycleIndexPolynomial polynomial = new CycleIndexPolynomial(width, height);
+        return polynomial.evaluate(sizes);
+    }
+
+    /**
+     * Memory maps a table written by writeAnswerTable, which then answers the solution calls within its range.
+     * Only the header is read here, the rest of the file is paged in as it is looked up.
+     *
+     * @param file  the table file, or null to stop using a table
+     * @throws IOException  if the file cannot be mapped or is not an answer table
+     */
+    public static void loadAnswerTable(Path file) throws IOException {
+        answerTable = file == null ? null : AnswerTable.open(file);
+    }
+
+    /**
+     * Computes the answers for every grid with sides up to maxSide and every size up to maxSize, and writes
+     * them to a table file.
+     *
+     * @param file  the table file to write
+     * @param maxSide  the largest width or height in the table
+     * @param maxSize  the largest size in the table
+     * @throws IOException  if the file cannot be written
+     */
+    public static void writeAnswerTable(Path file, int maxSide, int maxSize) throws IOException {
+        AnswerTable.write(file, maxSide, maxSize);
+    }
+
+    /**
+     * Returns the count of unique states, computed rather than looked up.
+     */
+    private static String computeUniqueStates(int width, int height, int size) {
+        // Grids past the cached cycle indices stream the partitions of one side instead.
+        if (Math.max(width, height) > CycleIndex.MAX_SIZE) {
+            LargeGridSolver largeGridSolver = new LargeGridSolver(width, height, size);
+            return largeGridSolver.getUniqueStates();
+        }
         StateGenerator stateGenerator = new StateGenerator(width, height, size);
         return stateGenerator.getUniqueStates();
     }
 
+    /**
+     * Returns the count of unique states able to be produced from a grid, modulo the given modulus. Odd prime
+     * moduli past both sides of the grid are computed entirely in long arithmetic, while any other modulus reduces
+     * the exact count.
+     *
+     * @param width  the width of the grid
+     * @param height  the height of the grid
+     * @param size  the max value of any single integer in the grid
+     * @param modulus  the positive modulus to reduce the count by
+     * @return  the count of unique states modulo the modulus
+     */
+    public static long solution(int width, int height, int size, long modulus) {
+        if (modulus < 1) throw new IllegalArgumentException("Modulus must be positive: " + modulus);
+        BigInteger bigModulus = BigInteger.valueOf(modulus);
+        if (modulus > Math.max(width, height) && modulus < Montgomery.MAX_MODULUS && modulus % 2 == 1
+                && bigModulus.isProbablePrime(64)) {
+            ModularSolver modularSolver = new ModularSolver(width, height, size);
+            return modularSolver.getUniqueStates(new long[] { modulus })[0];
+        }
+        return new BigInteger(solution(width, height, size)).mod(bigModulus).longValue();
+    }
+
+    /**
+     * Returns the exact count of unique states able to be produced from a grid, found from its residues modulo
+     * enough 61 bit primes to cover the count, recombined with the Chinese remainder theorem. Each prime repeats
+     * the work of a single modulus, so this is only faster than solution with many cores.
+     *
+     * @param width  the width of the grid
+     * @param height  the height of the grid
+     * @param size  the max value of any single integer in the grid
+     * @return  the count of unique states
+     */
+    public static String solutionByResidues(int width, int height, int size) {
+        // No grid has more states than the size ^ (width * height) fillings it is counted from.
+        long bound = (long) BigInteger.valueOf(size).bitLength() * width * height;
+        long[] primes = CrtPrimes.getPrimes((int) (bound / (CrtPrimes.PRIME_BITS - 1)) + 1);
+        ModularSolver modularSolver = new ModularSolver(width, height, size);
+        long[] residues = modularSolver.getUniqueStates(primes);
+        // Garner's recombination, adding one prime at a time.
+        BigInteger result = BigInteger.ZERO;
+        BigInteger product = BigInteger.ONE;
+        for (int i = 0; i < primes.length; i++) {
+            BigInteger prime = BigInteger.valueOf(primes[i]);
+            BigInteger difference = BigInteger.valueOf(residues[i]).subtract(result.mod(prime));
+            BigInteger step = difference.multiply(product.modInverse(prime)).mod(prime);
+            result = result.add(product.multiply(step));
+            product = product.multiply(prime);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the number of times a cycle index was found in the cache.
+     */
+    public static long getCycleIndexHits() {
+        return CYCLE_INDICES.hits.get();
+    }
+
+    /**
+     * Returns the number of times a cycle index had to be computed.
+     */
+    public static long getCycleIndexMisses() {
+        return CYCLE_INDICES.misses.get();
+    }
+
+    /**
+     * The PhaseListener interface is told when a counting phase finishes: each cycle index built, the reduction
+     * and evaluation of a polynomial, the large grid partition sweep and a modular batch.
+     */
+    public interface PhaseListener {
+
+        /**
+         * Called as a phase finishes, on the thread which started it.
+         *
+         * @param engine  CycleIndex, CycleIndexPolynomial, LargeGridSolver or ModularSolver
+         * @param phase  build, reduce, evaluate or enumerate
+         * @param durationNanos  the wall clock duration of the phase
+         * @param workCount  the partitions or partition pairs visited, the coefficients evaluated or the moduli
+         * @param allocatedBytes  the bytes the calling thread allocated, not counting pool workers, or -1
+         */
+        void phaseEnded(String engine, String phase, long durationNanos, long workCount, long allocatedBytes);
+
+    }
+
+    /**
+     * Sets the listener for the phases, or null to stop measuring them.
+     *
+     * @param listener  the listener, or null
+     */
+    public static void setPhaseListener(PhaseListener listener) {
+        phaseListener = listener;
+    }
+
     private static final class StateGenerator {
 
         private final int width;
@@ -34,17 +201,10 @@ public class Solution {
 
         private final int size;
 
-        private final int[][] gcdTable;
-
-        private final int[] factorialTable;
-
         public StateGenerator(int width, int height, int size) {
             this.width = width;
             this.height = height;
             this.size = size;
-            int max = Math.max(width, height);
-            gcdTable = buildGcdTable(max);
-            factorialTable = buildFactorialTable(max);
         }
 
         /**
@@ -52,39 +212,271 @@ public class Solution {
          * @return  The count in String format
          */
         public String getUniqueStates() {
-            // Produce the cartesian product of every row and column permutation and cycle count
-            return getPartitionAndCycleCount(width).entrySet().stream()
-                    .map(widthEntry -> getPartitionAndCycleCount(height).entrySet().stream()
-                            .map(heightEntry -> getResult(widthEntry, heightEntry))
-                            .reduce(BigDecimal.ZERO, BigDecimal::add))
-                    .reduce(BigDecimal.ZERO, BigDecimal::add)
-                    // Divide by the width factorial * height factorial
-                    .divide(BigDecimal.valueOf((long) factorialTable[width - 1] * factorialTable[height - 1]),
-                            0, RoundingMode.FLOOR).toString();
+            CycleIndexPolynomial polynomial = new CycleIndexPolynomial(width, height);
+            return polynomial.evaluate(size);
+        }
+
+    }
+
+    /**
+     * The CycleIndexPolynomial class holds the cycle index of a grid's row and column permutations as a
+     * polynomial in the size. The coefficient of each exponent totals the coefficient products of every pair of
+     * width and height partitions with that many cycles, and the count of unique states is the polynomial
+     * divided by width! * height!. Building it costs one pass over the partition pairs, after which every size
+     * is a single Horner evaluation.
+     */
+    public static final class CycleIndexPolynomial {
+
+        private final BigInteger[] coefficients;
+
+        private final BigInteger divisor;
+
+        /**
+         * Builds the polynomial for a grid with both sides at most 20.
+         * @param width  the width of the grid
+         * @param height  the height of the grid
+         */
+        public CycleIndexPolynomial(int width, int height) {
+            if (width < 1 || height < 1 || width > CycleIndex.MAX_SIZE || height > CycleIndex.MAX_SIZE) {
+                throw new IllegalArgumentException("Grid sides must be between 1 and " + CycleIndex.MAX_SIZE
+                        + ": " + width + " x " + height);
+            }
+            CycleIndex widthIndex = CYCLE_INDICES.getCycleIndex(width);
+            CycleIndex heightIndex = CYCLE_INDICES.getCycleIndex(height);
+            // Total the coefficients of every row and column permutation pair by their cycle count.
+            Phase phase = Phase.start("CycleIndexPolynomial", "reduce");
+            coefficients = ForkJoinPool.commonPool().invoke(
+                    new ExponentTotals(widthIndex, heightIndex, width * height, 0, widthIndex.size()));
+            phase.end((long) widthIndex.size() * heightIndex.size());
+            divisor = BigInteger.valueOf(widthIndex.getFactorial())
+                    .multiply(BigInteger.valueOf(heightIndex.getFactorial()));
         }
 
         /**
-         * Returns the result of combining two permutation and cycle counts
-         * @param widthEntry  the first permutation and cycle count
-         * @param heightEntry  the second permutation and cycle count
-         * @return  the result of combining the two permutation and cycle counts
+         * Returns the degree of the polynomial, which is width * height.
          */
-        private BigDecimal getResult(Map.Entry<int[], Integer> widthEntry,
-                                     Map.Entry<int[], Integer> heightEntry) {
-            return BigDecimal.valueOf((long) widthEntry.getValue() * heightEntry.getValue())
-                    .multiply(BigDecimal.valueOf(size).pow(Arrays.stream(widthEntry.getKey())
-                            .map(w -> Arrays.stream(heightEntry.getKey())
-                                    .map(h -> gcdTable[w - 1][h - 1]).sum()).sum()));
+        public int getDegree() {
+            return coefficients.length - 1;
         }
 
         /**
-         * Returns the cycle counts of all permutation groups via Polya's enumeration theorem
-         * @param num  the size of the array
-         * @return  Map of all permutation groups and their cycle count
+         * Returns the coefficient of an exponent, before the division by width! * height!.
+         * @param exponent  the exponent, up to the degree
+         * @return  the coefficient
          */
-        private Map<int[], Integer> getPartitionAndCycleCount(int num) {
-            Map<int[], Integer> result = new HashMap<>();
-            int[] a = IntStream.range(0, num + 1).toArray();
+        public BigInteger getCoefficient(int exponent) {
+            return coefficients[exponent];
+        }
+
+        /**
+         * Returns width! * height!, which divides the polynomial's value exactly.
+         */
+        public BigInteger getDivisor() {
+            return divisor;
+        }
+
+        /**
+         * Returns the count of unique states for a size
+         * @param size  the max value of any single integer in the grid
+         * @return  The count in String format
+         */
+        public String evaluate(int size) {
+            // Horner's rule, so each step only multiplies by the small size.
+            Phase phase = Phase.start("CycleIndexPolynomial", "evaluate");
+            BigInteger base = BigInteger.valueOf(size);
+            BigInteger sum = BigInteger.ZERO;
+            for (int exponent = coefficients.length - 1; exponent >= 0; exponent--) {
+                sum = sum.multiply(base).add(coefficients[exponent]);
+            }
+            String count = sum.divide(divisor).toString();
+            phase.end(coefficients.length);
+            return count;
+        }
+
+        /**
+         * Returns the count of unique states for each of the sizes
+         * @param sizes  the max values of any single integer in the grid
+         * @return  The counts in String format, in the same order
+         */
+        public String[] evaluate(int[] sizes) {
+            String[] counts = new String[sizes.length];
+            for (int i = 0; i < sizes.length; i++) counts[i] = evaluate(sizes[i]);
+            return counts;
+        }
+
+    }
+
+    /**
+     * The ExponentTotals class sums the coefficient products of every pair of width and height partitions
+     * with the same exponent, splitting the width partitions across the fork-join pool.
+     */
+    @SuppressWarnings("serial")
+    private static final class ExponentTotals extends RecursiveTask<BigInteger[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int SEQUENTIAL_THRESHOLD = 8;
+
+        private final CycleIndex widthIndex;
+
+        private final CycleIndex heightIndex;
+
+        private final int maxExponent;
+
+        private final int from;
+
+        private final int to;
+
+        public ExponentTotals(CycleIndex widthIndex, CycleIndex heightIndex, int maxExponent, int from, int to) {
+            this.widthIndex = widthIndex;
+            this.heightIndex = heightIndex;
+            this.maxExponent = maxExponent;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BigInteger[] compute() {
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                ExponentTotals right = new ExponentTotals(widthIndex, heightIndex, maxExponent, middle, to);
+                right.fork();
+                BigInteger[] totals = new ExponentTotals(widthIndex, heightIndex, maxExponent, from, middle).compute();
+                BigInteger[] rightTotals = right.join();
+                for (int i = 0; i < totals.length; i++) totals[i] = totals[i].add(rightTotals[i]);
+                return totals;
+            }
+            BigInteger[] totals = new BigInteger[maxExponent + 1];
+            Arrays.fill(totals, BigInteger.ZERO);
+            long[] heightTotals = new long[maxExponent + 1];
+            for (int w = from; w < to; w++) {
+                /*
+                 * The height coefficients of a single width partition sum to height!, so they are totalled in a long
+                 * before being multiplied by the width coefficient.
+                 */
+                Arrays.fill(heightTotals, 0);
+                for (int h = 0; h < heightIndex.size(); h++) {
+                    heightTotals[widthIndex.getExponent(w, heightIndex, h)] += heightIndex.getCoefficient(h);
+                }
+                BigInteger widthCoefficient = BigInteger.valueOf(widthIndex.getCoefficient(w));
+                for (int exponent = 0; exponent <= maxExponent; exponent++) {
+                    if (heightTotals[exponent] == 0) continue;
+                    totals[exponent] = totals[exponent].add(widthCoefficient.multiply(BigInteger.valueOf(heightTotals[exponent])));
+                }
+            }
+            return totals;
+        }
+
+    }
+
+    /**
+     * The LargeGridSolver class counts the unique states of grids too large for the cached cycle indices. Only the
+     * partitions of the smaller side are enumerated, one at a time. For a partition with k_i parts of size i, the
+     * permutations of the larger side contribute n! [x^n] exp(sum over j of a_j x^j / j), where a_j is the size
+     * raised to the sum of k_i * gcd(i, j). That coefficient follows from the recurrence k W_k = sum over j of
+     * a_j W_(k - j) with W_0 = n!, so no partition of the larger side is ever generated.
+     * <p>
+     * Every partition of the smaller side is still visited, at larger side^2 big integer steps each. A grid of 30 x
+     * 30 takes about 2 s, 40 x 40 about 9 s and 50 x 50 about a minute, while 100 x 100, with p(100) ~ 1.9e8
+     * partitions, is out of reach. Partitions cannot be merged by their exponents either, as the number of parts
+     * divisible by each d, which fixes the exponents, also fixes the partition.
+     */
+    private static final class LargeGridSolver {
+
+        private final int smaller;
+
+        private final int larger;
+
+        private final int size;
+
+        public LargeGridSolver(int width, int height, int size) {
+            this.smaller = Math.min(width, height);
+            this.larger = Math.max(width, height);
+            this.size = size;
+        }
+
+        /**
+         * Returns the count of unique states
+         * @return  The count in String format
+         */
+        public String getUniqueStates() {
+            // The exponent of any term is at most the smaller side, so every power needed is cached up front.
+            Phase phase = Phase.start("LargeGridSolver", "enumerate");
+            BigInteger[] powers = new BigInteger[smaller + 1];
+            powers[0] = BigInteger.ONE;
+            for (int i = 1; i <= smaller; i++) powers[i] = powers[i - 1].multiply(BigInteger.valueOf(size));
+            int[][] gcds = new int[smaller + 1][larger + 1];
+            for (int i = 1; i <= smaller; i++) {
+                for (int j = 1; j <= larger; j++) gcds[i][j] = CycleIndex.gcd(i, j);
+            }
+            BigInteger smallerFactorial = FACTORIALS.getFactorial(smaller);
+            BigInteger largerFactorial = FACTORIALS.getFactorial(larger);
+            int[] multiplicities = new int[smaller + 1];
+            int[] exponents = new int[larger + 1];
+            BigInteger[] scaled = new BigInteger[larger + 1];
+            BigInteger[] totals = new BigInteger[smaller + 1];
+            BigInteger[] total = { BigInteger.ZERO };
+            long[] partitionCount = { 0 };
+            PartitionGenerator.forEach(smaller, (parts, length) -> {
+                partitionCount[0]++;
+                Arrays.fill(multiplicities, 0);
+                for (int i = 0; i < length; i++) multiplicities[parts[i]]++;
+                // The number of permutations with this cycle type is smaller! / product of i^k_i * k_i!.
+                BigInteger centralizerSize = BigInteger.ONE;
+                for (int i = 1; i <= smaller; i++) {
+                    if (multiplicities[i] == 0) continue;
+                    centralizerSize = centralizerSize.multiply(BigInteger.valueOf(i).pow(multiplicities[i])
+                            .multiply(FACTORIALS.getFactorial(multiplicities[i])));
+                }
+                for (int j = 1; j <= larger; j++) {
+                    exponents[j] = 0;
+                    for (int i = 1; i <= smaller; i++) exponents[j] += multiplicities[i] * gcds[i][j];
+                }
+                scaled[0] = largerFactorial;
+                for (int k = 1; k <= larger; k++) {
+                    // Few distinct exponents occur, so the terms are added up per exponent before multiplying.
+                    Arrays.fill(totals, null);
+                    for (int j = 1; j <= k; j++) {
+                        BigInteger term = scaled[k - j];
+                        totals[exponents[j]] = totals[exponents[j]] == null ? term : totals[exponents[j]].add(term);
+                    }
+                    BigInteger sum = BigInteger.ZERO;
+                    for (int e = 1; e <= smaller; e++) {
+                        if (totals[e] != null) sum = sum.add(powers[e].multiply(totals[e]));
+                    }
+                    scaled[k] = sum.divide(BigInteger.valueOf(k));
+                }
+                total[0] = total[0].add(smallerFactorial.divide(centralizerSize).multiply(scaled[larger]));
+            });
+            phase.end(partitionCount[0]);
+            // Divide by the width factorial * height factorial
+            return total[0].divide(smallerFactorial.multiply(largerFactorial)).toString();
+        }
+
+    }
+
+    /**
+     * The PartitionGenerator class streams the partitions of a number, each as its parts in increasing order.
+     */
+    private static final class PartitionGenerator {
+
+        /**
+         * The PartitionConsumer interface receives each partition. The parts array is reused between
+         * partitions, so it must be copied to be kept.
+         */
+        private interface PartitionConsumer {
+
+            void accept(int[] parts, int length);
+
+        }
+
+        /**
+         * Passes every partition of num to the consumer.
+         * @param num  the number to partition
+         * @param consumer  the consumer of each partition
+         */
+        public static void forEach(int num, PartitionConsumer consumer) {
+            int[] a = new int[num + 1];
             int k = 1;
             int y = num - 1;
             while (k != 0) {
@@ -99,74 +491,621 @@ public class Solution {
                 while (x <= y) {
                     a[k] = x;
                     a[l] = y;
-                    int[] partition = Arrays.copyOfRange(a, 0, k + 2);
-                    result.put(partition, getCoefficientFactor(partition, num));
+                    consumer.accept(a, k + 2);
                     x += 1;
                     y -= 1;
                 }
                 a[k] = x + y;
                 y = x + y - 1;
-                int[] partition = Arrays.copyOfRange(a, 0, k + 1);
-                result.put(partition, getCoefficientFactor(partition, num));
+                consumer.accept(a, k + 1);
+            }
+        }
+
+    }
+
+    /**
+     * The FactorialCache class holds the factorials computed so far, extending them as larger ones are needed.
+     */
+    private static final class FactorialCache {
+
+        private final List<BigInteger> factorials = new ArrayList<>(Arrays.asList(BigInteger.ONE));
+
+        /**
+         * Returns n factorial.
+         * @param n  the number to find the factorial of
+         * @return  n!
+         */
+        public synchronized BigInteger getFactorial(int n) {
+            while (factorials.size() <= n) {
+                factorials.add(factorials.get(factorials.size() - 1).multiply(BigInteger.valueOf(factorials.size())));
+            }
+            return factorials.get(n);
+        }
+
+    }
+
+    /**
+     * The ModularSolver class counts the unique states modulo odd primes larger than both sides of the grid. It
+     * follows LargeGridSolver, except the coefficients are divided out with modular inverses as they go, so every
+     * partition adds [x^n] exp(sum over j of a_j x^j / j) / z to the total directly. Each partition is enumerated
+     * once and then applied to every modulus of the batch.
+     * <p>
+     * It visits the same partitions as LargeGridSolver, so it reaches no larger grids. It only trades the big
+     * integers for words, which makes a single modulus several times faster, while the hundreds of primes an exact
+     * count needs make solutionByResidues slower than the exact path unless there are cores to spread them over.
+     */
+    private static final class ModularSolver {
+
+        /**
+         * The most moduli handled by a single task.
+         */
+        private static final int SEQUENTIAL_THRESHOLD = 4;
+
+        private final int smaller;
+
+        private final int larger;
+
+        private final int size;
+
+        public ModularSolver(int width, int height, int size) {
+            this.smaller = Math.min(width, height);
+            this.larger = Math.max(width, height);
+            this.size = size;
+        }
+
+        /**
+         * Returns the count of unique states modulo each of the moduli, splitting the moduli across the common
+         * fork-join pool.
+         * @param moduli  the odd primes larger than both sides of the grid
+         * @return  the count modulo each modulus, in the same order
+         */
+        public long[] getUniqueStates(long[] moduli) {
+            // Only the calling thread's allocations are attributed to the phase, not the pool's.
+            Phase phase = Phase.start("ModularSolver", "reduce");
+            long[] residues = ForkJoinPool.commonPool().invoke(new ResidueTask(moduli, 0, moduli.length));
+            phase.end(moduli.length);
+            return residues;
+        }
+
+        /**
+         * Returns the count of unique states modulo each of the moduli from index from, inclusive, to index to,
+         * exclusive.
+         */
+        private long[] sweep(long[] moduli, int from, int to) {
+            int count = to - from;
+            Montgomery[] fields = new Montgomery[count];
+            long[][] powers = new long[count][smaller + 1];
+            long[][] inverses = new long[count][larger + 1];
+            long[][] factorialInverses = new long[count][smaller + 1];
+            for (int f = 0; f < count; f++) {
+                Montgomery field = fields[f] = new Montgomery(moduli[from + f]);
+                BigInteger modulus = BigInteger.valueOf(field.modulus);
+                long base = field.toMontgomery(size % field.modulus);
+                powers[f][0] = field.one;
+                for (int e = 1; e <= smaller; e++) powers[f][e] = field.multiply(powers[f][e - 1], base);
+                for (int i = 1; i <= larger; i++) {
+                    inverses[f][i] = field.toMontgomery(BigInteger.valueOf(i).modInverse(modulus).longValue());
+                }
+                factorialInverses[f][0] = field.one;
+                for (int i = 1; i <= smaller; i++) {
+                    factorialInverses[f][i] = field.multiply(factorialInverses[f][i - 1], inverses[f][i]);
+                }
             }
-            return result;
+            int[] multiplicities = new int[smaller + 1];
+            int[] exponents = new int[larger + 1];
+            long[] scaled = new long[larger + 1];
+            long[] totals = new long[smaller + 1];
+            long[] results = new long[count];
+            PartitionGenerator.forEach(smaller, (parts, length) -> {
+                Arrays.fill(multiplicities, 0);
+                for (int i = 0; i < length; i++) multiplicities[parts[i]]++;
+                for (int j = 1; j <= larger; j++) {
+                    exponents[j] = 0;
+                    for (int i = 1; i <= smaller; i++) exponents[j] += multiplicities[i] * CycleIndex.gcd(i, j);
+                }
+                for (int f = 0; f < count; f++) {
+                    Montgomery field = fields[f];
+                    // The inverse of the centralizer size, the product of i^k_i * k_i!.
+                    long coefficient = field.one;
+                    for (int i = 1; i <= smaller; i++) {
+                        if (multiplicities[i] == 0) continue;
+                        coefficient = field.multiply(coefficient, factorialInverses[f][multiplicities[i]]);
+                        for (int k = 0; k < multiplicities[i]; k++) {
+                            coefficient = field.multiply(coefficient, inverses[f][i]);
+                        }
+                    }
+                    scaled[0] = field.one;
+                    for (int k = 1; k <= larger; k++) {
+                        // Additions are much cheaper than products, so the terms are added up per exponent first.
+                        Arrays.fill(totals, 0);
+                        for (int j = 1; j <= k; j++) totals[exponents[j]] = field.add(totals[exponents[j]], scaled[k - j]);
+                        long sum = 0;
+                        for (int e = 1; e <= smaller; e++) {
+                            if (totals[e] != 0) sum = field.add(sum, field.multiply(powers[f][e], totals[e]));
+                        }
+                        scaled[k] = field.multiply(sum, inverses[f][k]);
+                    }
+                    results[f] = field.add(results[f], field.multiply(coefficient, scaled[larger]));
+                }
+            });
+            for (int f = 0; f < count; f++) results[f] = fields[f].fromMontgomery(results[f]);
+            return results;
+        }
+
+        /**
+         * The ResidueTask class splits a range of moduli in half until it is small enough to sweep.
+         */
+        private final class ResidueTask extends RecursiveTask<long[]> {
+
+            private static final long serialVersionUID = 1L;
+
+            private final long[] moduli;
+
+            private final int from;
+
+            private final int to;
+
+            public ResidueTask(long[] moduli, int from, int to) {
+                this.moduli = moduli;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected long[] compute() {
+                if (to - from <= SEQUENTIAL_THRESHOLD) return sweep(moduli, from, to);
+                int middle = (from + to) >>> 1;
+                ResidueTask right = new ResidueTask(moduli, middle, to);
+                right.fork();
+                long[] left = new ResidueTask(moduli, from, middle).compute();
+                long[] results = Arrays.copyOf(left, to - from);
+                System.arraycopy(right.join(), 0, results, left.length, to - middle);
+                return results;
+            }
+
+        }
+
+    }
+
+    /**
+     * The Montgomery class does arithmetic modulo an odd modulus below 2^62, keeping values in Montgomery form
+     * a * 2^64 mod m so that products need no division.
+     */
+    private static final class Montgomery {
+
+        /**
+         * The exclusive upper bound of the moduli, which keeps the sum of two values within a long.
+         */
+        public static final long MAX_MODULUS = 1L << 62;
+
+        public final long modulus;
+
+        /**
+         * The Montgomery form of one.
+         */
+        public final long one;
+
+        /**
+         * The negated inverse of the modulus modulo 2^64.
+         */
+        private final long negatedInverse;
+
+        /**
+         * 2^128 mod m, which converts values into Montgomery form.
+         */
+        private final long squaredRadix;
+
+        public Montgomery(long modulus) {
+            this.modulus = modulus;
+            // Newton's iteration doubles the correct low bits of the inverse each step.
+            long inverse = modulus;
+            for (int i = 0; i < 5; i++) inverse *= 2 - modulus * inverse;
+            negatedInverse = -inverse;
+            BigInteger bigModulus = BigInteger.valueOf(modulus);
+            one = BigInteger.ONE.shiftLeft(64).mod(bigModulus).longValue();
+            squaredRadix = BigInteger.ONE.shiftLeft(128).mod(bigModulus).longValue();
+        }
+
+        public long toMontgomery(long value) {
+            return multiply(value, squaredRadix);
+        }
+
+        public long fromMontgomery(long value) {
+            return reduce(0, value);
+        }
+
+        public long add(long a, long b) {
+            long sum = a + b;
+            return sum >= modulus ? sum - modulus : sum;
+        }
+
+        public long multiply(long a, long b) {
+            return reduce(unsignedMultiplyHigh(a, b), a * b);
         }
 
         /**
-         * Returns the cycle count of the specified array
-         * @param partitions  the partition array
-         * @param num  the size of the array the partition is from
-         * @return  the cycle count
+         * Returns the 128 bit value high * 2^64 + low divided by 2^64 modulo the modulus, for values below
+         * modulus * 2^64.
          */
-        private int getCoefficientFactor(int[] partitions, int num) {
-            return Arrays.stream(partitions).boxed().collect(Collectors.toMap(i -> i, i -> 1, Integer::sum))
-                    .entrySet().stream().reduce(factorialTable[num - 1], this::accumulator, Integer::sum);
+        private long reduce(long high, long low) {
+            long m = low * negatedInverse;
+            // low + the low half of m * modulus is zero modulo 2^64, carrying exactly when low is non-zero.
+            long result = high + unsignedMultiplyHigh(m, modulus) + (low != 0 ? 1 : 0);
+            return result >= modulus ? result - modulus : result;
         }
 
         /**
-         * Returns the new subtotal of the coefficient factor with the next value added on
-         * @param subtotal  the current total of the coefficient factor
-         * @param next  the next value to add on
-         * @return  the new subtotal
+         * Returns the high 64 bits of the unsigned 128 bit product of a and b.
          */
-        private int accumulator(int subtotal, Map.Entry<Integer, Integer> next) {
-            return Math.floorDiv(subtotal, (int) Math.pow(next.getKey(), next.getValue()) *
-                    factorialTable[next.getValue() - 1]);
+        private static long unsignedMultiplyHigh(long a, long b) {
+            long aLow = a & 0xFFFFFFFFL, aHigh = a >>> 32;
+            long bLow = b & 0xFFFFFFFFL, bHigh = b >>> 32;
+            long lowLow = aLow * bLow;
+            long middle = aHigh * bLow + (lowLow >>> 32);
+            long cross = aLow * bHigh + (middle & 0xFFFFFFFFL);
+            return aHigh * bHigh + (middle >>> 32) + (cross >>> 32);
         }
 
+    }
+
+    /**
+     * The CrtPrimes class holds the largest primes below 2^61, found as they are first needed.
+     */
+    private static final class CrtPrimes {
+
+        public static final int PRIME_BITS = 61;
+
+        private static final List<Long> PRIMES = new ArrayList<>();
+
         /**
-         * Returns a table of values such that table[a][b] is the gcd of a and b via Euclid's algorithm
-         * @param size  the maximum number the table can check for
-         * @return  the gdc table
+         * Returns the count largest primes below 2^61, in decreasing order.
+         * @param count  the number of primes
+         * @return  the primes
          */
-        private int[][] buildGcdTable(int size) {
-            int[][] table = IntStream.range(0, size).mapToObj(x ->
-                    IntStream.range(0, size).map(y -> 0).toArray()).toArray(int[][]::new);
+        public static synchronized long[] getPrimes(int count) {
+            long candidate = PRIMES.isEmpty() ? 1L << PRIME_BITS : PRIMES.get(PRIMES.size() - 1);
+            while (PRIMES.size() < count) {
+                candidate -= candidate % 2 == 0 ? 1 : 2;
+                if (BigInteger.valueOf(candidate).isProbablePrime(64)) PRIMES.add(candidate);
+            }
+            long[] primes = new long[count];
+            for (int i = 0; i < count; i++) primes[i] = PRIMES.get(i);
+            return primes;
+        }
+
+    }
 
-            IntStream.range(0, size).forEach(a -> IntStream.range(a, size).forEach(b -> {
-                if (a == 0 || b == 0) {
-                    table[a][b] = table[b][a] = 1;
-                } else if (a == b) {
-                    table[a][a] = a + 1;
-                } else {
-                    table[a][b] = table[b][a] = table[a][b - a - 1];
+    /**
+     * The AnswerTable class reads answers from a memory mapped table file. As the count is symmetric in the width
+     * and height, only grids with width at most height are stored. The file is a header of the magic number, the
+     * max side and the max size, then an index of the absolute offsets of every answer plus one closing offset,
+     * then the answers as ASCII digits, so a lookup is a copy rather than a radix conversion. Answer slots are
+     * ordered by height, then width, then size, so any slot is found in constant time.
+     */
+    private static final class AnswerTable {
+
+        private static final int MAGIC = 0x44455343;
+
+        private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+        private final ByteBuffer buffer;
+
+        private final int maxSide;
+
+        private final int maxSize;
+
+        private AnswerTable(ByteBuffer buffer, int maxSide, int maxSize) {
+            this.buffer = buffer;
+            this.maxSide = maxSide;
+            this.maxSize = maxSize;
+        }
+
+        public static AnswerTable open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) throw new IOException("Answer table too large to map: " + file);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.remaining() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                    throw new IOException("Not an answer table: " + file);
+                }
+                int maxSide = buffer.getInt(Integer.BYTES), maxSize = buffer.getInt(2 * Integer.BYTES);
+                long indexEnd = HEADER_BYTES + (getSlotCount(maxSide, maxSize) + 1) * Long.BYTES;
+                if (maxSide < 0 || maxSize < 0 || buffer.remaining() < indexEnd) {
+                    throw new IOException("Truncated answer table: " + file);
                 }
-            }));
+                return new AnswerTable(buffer, maxSide, maxSize);
+            }
+        }
 
-            return table;
+        public static void write(Path file, int maxSide, int maxSize) throws IOException {
+            long slots = getSlotCount(maxSide, maxSize);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer index = ByteBuffer.allocate((int) ((slots + 1) * Long.BYTES));
+                long offset = HEADER_BYTES + index.capacity();
+                // The answers are streamed after the space left for the index, which is written last.
+                channel.position(offset);
+                for (int height = 1; height <= maxSide; height++) {
+                    for (int width = 1; width <= height; width++) {
+                        for (int size = 1; size <= maxSize; size++) {
+                            index.putLong(offset);
+                            ByteBuffer answer = ByteBuffer.wrap(
+                                    computeUniqueStates(width, height, size).getBytes(StandardCharsets.US_ASCII));
+                            offset += answer.remaining();
+                            while (answer.hasRemaining()) channel.write(answer);
+                        }
+                    }
+                }
+                index.putLong(offset);
+                index.flip();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(maxSide).putInt(maxSize);
+                header.flip();
+                long position = 0;
+                while (header.hasRemaining()) position += channel.write(header, position);
+                while (index.hasRemaining()) position += channel.write(index, position);
+            }
         }
 
         /**
-         * Returns an array of factorials such that array[i] is the factorial of i
-         * @param size  the number of factorials to add
-         * @return  the array of factorials
+         * Returns the answer stored for the grid, or null if it lies outside the table.
          */
-        private int[] buildFactorialTable(int size) {
-            Deque<Integer> factorials = new LinkedList<>(Collections.singleton(1));
-            IntStream.range(0, size - 1).forEach(n -> factorials.add(factorials.getLast() * (n + 2)));
-            return factorials.stream().mapToInt(i -> i).toArray();
+        public String lookup(int width, int height, int size) {
+            int smaller = Math.min(width, height), larger = Math.max(width, height);
+            if (smaller < 1 || larger > maxSide || size < 1 || size > maxSize) return null;
+            long slot = ((long) larger * (larger - 1) / 2 + smaller - 1) * maxSize + size - 1;
+            int indexOffset = (int) (HEADER_BYTES + slot * Long.BYTES);
+            int start = (int) buffer.getLong(indexOffset), end = (int) buffer.getLong(indexOffset + Long.BYTES);
+            byte[] answer = new byte[end - start];
+            // The shared buffer's position is left alone so lookups can run concurrently.
+            ByteBuffer view = buffer.duplicate();
+            view.position(start);
+            view.get(answer);
+            return new String(answer, StandardCharsets.US_ASCII);
+        }
+
+        private static long getSlotCount(int maxSide, int maxSize) {
+            return (long) maxSide * (maxSide + 1) / 2 * maxSize;
         }
 
+    }
+
+    /**
+     * The CycleIndex class holds the partitions of n, which are the cycle types of the permutations of n items,
+     * with the number of permutations of each type. For every partition it also holds a row of the sums of
+     * gcd(part, m) over its parts, so the exponent of a pair of partitions is a sum over one partition's parts.
+     */
+    private static final class CycleIndex {
+
+        /**
+         * The largest supported n, as the coefficients and n! must fit in a long.
+         */
+        private static final int MAX_SIZE = 20;
+
+        /**
+         * The parts of every partition, concatenated. Partition i has the parts from partitionStarts[i]
+         * up to partitionStarts[i + 1].
+         */
+        private final int[] parts;
+
+        private final int[] partitionStarts;
+
+        private final long[] coefficients;
+
+        /**
+         * The gcd sums of every partition, such that gcdRows[i * MAX_SIZE + m - 1] is the sum of gcd(part, m)
+         * over the parts of partition i.
+         */
+        private final int[] gcdRows;
+
+        private final long factorial;
+
+        public CycleIndex(int n) {
+            if (n < 1 || n > MAX_SIZE) throw new IllegalArgumentException("Size must be between 1 and " + MAX_SIZE + ": " + n);
+            Phase phase = Phase.start("CycleIndex", "build");
+            List<int[]> partitions = getPartitions(n);
+            partitionStarts = new int[partitions.size() + 1];
+            for (int i = 0; i < partitions.size(); i++) {
+                partitionStarts[i + 1] = partitionStarts[i] + partitions.get(i).length;
+            }
+            parts = new int[partitionStarts[partitions.size()]];
+            coefficients = new long[partitions.size()];
+            gcdRows = new int[partitions.size() * MAX_SIZE];
+            long nFactorial = 1;
+            for (int i = 2; i <= n; i++) nFactorial *= i;
+            factorial = nFactorial;
+            for (int i = 0; i < partitions.size(); i++) {
+                int[] partition = partitions.get(i);
+                System.arraycopy(partition, 0, parts, partitionStarts[i], partition.length);
+                coefficients[i] = factorial / getCentralizerSize(partition);
+                for (int part : partition) {
+                    for (int m = 1; m <= MAX_SIZE; m++) gcdRows[i * MAX_SIZE + m - 1] += gcd(part, m);
+                }
+            }
+            phase.end(partitions.size());
+        }
+
+        /**
+         * Returns the number of partitions.
+         */
+        public int size() {
+            return coefficients.length;
+        }
+
+        /**
+         * Returns n factorial.
+         */
+        public long getFactorial() {
+            return factorial;
+        }
+
+        /**
+         * Returns the number of permutations with the cycle type of the partition.
+         *
+         * @param partition  the index of the partition
+         * @return  the coefficient
+         */
+        public long getCoefficient(int partition) {
+            return coefficients[partition];
+        }
+
+        /**
+         * Returns the number of cycles of a pair of permutations acting on a grid, which is the sum of
+         * gcd(i, j) over the parts i of the first partition and the parts j of the second.
+         *
+         * @param partition  the index of the partition in this cycle index
+         * @param other  the other cycle index
+         * @param otherPartition  the index of the partition in the other cycle index
+         * @return  the exponent of the pair
+         */
+        public int getExponent(int partition, CycleIndex other, int otherPartition) {
+            int exponent = 0;
+            int rowStart = otherPartition * MAX_SIZE - 1;
+            for (int i = partitionStarts[partition]; i < partitionStarts[partition + 1]; i++) {
+                exponent += other.gcdRows[rowStart + parts[i]];
+            }
+            return exponent;
+        }
+
+        /**
+         * Returns the product of i^k * k! over the parts i of the partition repeated k times, which divides n!
+         * into the number of permutations with that cycle type.
+         */
+        private static long getCentralizerSize(int[] partition) {
+            long size = 1;
+            // The parts are in increasing order, so equal parts are adjacent.
+            for (int i = 0, repeats = 0; i < partition.length; i++) {
+                repeats = i > 0 && partition[i] == partition[i - 1] ? repeats + 1 : 1;
+                size *= (long) partition[i] * repeats;
+            }
+            return size;
+        }
+
+        /**
+         * Returns every partition of num as an array of parts in increasing order.
+         * @param num  the number to partition
+         * @return  list of all partitions of num
+         */
+        private static List<int[]> getPartitions(int num) {
+            List<int[]> partitions = new ArrayList<>();
+            PartitionGenerator.forEach(num, (parts, length) -> partitions.add(Arrays.copyOf(parts, length)));
+            return partitions;
+        }
+
+        private static int gcd(int a, int b) {
+            while (b != 0) {
+                int remainder = a % b;
+                a = b;
+                b = remainder;
+            }
+            return a;
+        }
+
+    }
+
+    /**
+     * The CycleIndexCache class holds the cycle indices of recently used sizes, shared across every
+     * grid, evicting the least recently used cycle index once the maximum number is reached.
+     */
+    private static final class CycleIndexCache {
+
+        private final Map<Integer, CycleIndex> cycleIndices;
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        public CycleIndexCache(int maxCycleIndices) {
+            this.cycleIndices = new LinkedHashMap<Integer, CycleIndex>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, CycleIndex> eldest) {
+                    return size() > maxCycleIndices;
+                }
+            };
+        }
+
+        /**
+         * Returns the cycle index for the given size, computing and caching it if necessary.
+         *
+         * @param n  the number of items being permuted
+         * @return  the cycle index
+         */
+        public synchronized CycleIndex getCycleIndex(int n) {
+            CycleIndex cycleIndex = cycleIndices.get(n);
+            if (cycleIndex != null) {
+                hits.incrementAndGet();
+                return cycleIndex;
+            }
+            misses.incrementAndGet();
+            cycleIndex = new CycleIndex(n);
+            cycleIndices.put(n, cycleIndex);
+            return cycleIndex;
+        }
+
+    }
+
+    /**
+     * The Phase class times a counting phase for the listener, and is a shared no-op while there is none.
+     */
+    private static final class Phase {
+
+        private static final Phase INERT = new Phase(null, null, null);
+
+        private final PhaseListener listener;
+
+        private final String engine;
+
+        private final String name;
+
+        private final long startNanos;
+
+        private final long startBytes;
+
+        private Phase(PhaseListener listener, String engine, String name) {
+            this.listener = listener;
+            this.engine = engine;
+            this.name = name;
+            this.startBytes = listener == null ? 0 : getAllocatedBytes();
+            this.startNanos = listener == null ? 0 : System.nanoTime();
+        }
+
+        /**
+         * Starts measuring a phase, if a listener is set.
+         */
+        public static Phase start(String engine, String name) {
+            PhaseListener listener = phaseListener;
+            return listener == null ? INERT : new Phase(listener, engine, name);
+        }
+
+        /**
+         * Reports the phase to the listener it started with, if any.
+         */
+        public void end(long workCount) {
+            if (listener == null) return;
+            long durationNanos = System.nanoTime() - startNanos;
+            long endBytes = getAllocatedBytes();
+            long allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+            listener.phaseEnded(engine, name, durationNanos, workCount, allocatedBytes);
+        }
+
+        private static long getAllocatedBytes() {
+            return ThreadAllocations.BEAN == null ? -1 :
+                    ThreadAllocations.BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        private static final class ThreadAllocations {
+
+            private static final com.sun.management.ThreadMXBean BEAN = getBean();
+
+            private static com.sun.management.ThreadMXBean getBean() {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (!(bean instanceof com.sun.management.ThreadMXBean)) return null;
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                return threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled() ?
+                        threads : null;
+            }
+
+        }
 
     }
 
@@ -0,0 +1,53 @@
+package foobar.benchmarks;
+
+import foobar.accesscodes.Solution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the triples of a random array with each strategy, by array size. The values are kept small so
+ * divisible pairs are common, as they are in the inputs that stress the counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessCodesBenchmark {
+
+    @Param({ "100", "1000", "2000" })
+    private int size;
+
+    @Param({ "100" })
+    private int maxValue;
+
+    @Param({ "CUBIC", "QUADRATIC", "SIEVE" })
+    private Solution.Strategy strategy;
+
+    private int[] numbers;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        numbers = random.ints(size, 1, maxValue + 1).toArray();
+    }
+
+    @Benchmark
+    public long solution() {
+        return Solution.solution(numbers, strategy);
+    }
+
+}
@@ -0,0 +1,55 @@
+package foobar.benchmarks;
+
+import foobar.disorderlyescape.Solution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Counts the unique states of a square grid exactly and modulo a prime, by grid side and size, and sweeps
+ * the sizes 1 to 100 through one cycle index polynomial. No answer table is loaded, so every call is computed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisorderlyEscapeBenchmark {
+
+    private static final long MODULUS = 1_000_000_007L;
+
+    private static final int[] SWEEP_SIZES = IntStream.rangeClosed(1, 100).toArray();
+
+    @Param({ "4", "8", "12", "16", "20" })
+    private int side;
+
+    @Param({ "2", "20" })
+    private int size;
+
+    @Benchmark
+    public String solution() {
+        return Solution.solution(side, side, size);
+    }
+
+    @Benchmark
+    public long solutionModulo() {
+        return Solution.solution(side, side, size, MODULUS);
+    }
+
+    @Benchmark
+    public String[] solutionSweep() {
+        return Solution.solution(side, side, SWEEP_SIZES);
+    }
+
+}
@@ -0,0 +1,55 @@
+package foobar.benchmarks;
+
+import foobar.fuelinjection.Solution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the conversions of a random number with the decimal digit buffer and with the binary step counter,
+ * by the number of decimal digits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FuelInjectionBenchmark {
+
+    @Param({ "10", "100", "309", "1000" })
+    private int digits;
+
+    private String number;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(digits);
+        StringBuilder builder = new StringBuilder(digits);
+        builder.append((char) ('1' + random.nextInt(9)));
+        while (builder.length() < digits) builder.append((char) ('0' + random.nextInt(10)));
+        number = builder.toString();
+    }
+
+    @Benchmark
+    public int solution() {
+        return Solution.solution(number);
+    }
+
+    @Benchmark
+    public int solutionFromBinary() {
+        return Solution.solutionFromBinary(number);
+    }
+
+}
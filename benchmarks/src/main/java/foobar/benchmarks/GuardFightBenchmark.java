@@ -0,0 +1,53 @@
+package foobar.benchmarks;
+
+import foobar.guardfight.Solution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the directions of the challenge's first example room with the ring walking path finder, the
+ * image sweep and the lattice counter, by distance.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuardFightBenchmark {
+
+    private static final int[] DIMENSIONS = { 3, 2 };
+
+    private static final int[] START_POINT = { 1, 1 };
+
+    private static final int[] END_POINT = { 2, 1 };
+
+    @Param({ "100", "500", "1000" })
+    private int distance;
+
+    @Benchmark
+    public int solution() {
+        return Solution.solution(DIMENSIONS, START_POINT, END_POINT, distance);
+    }
+
+    @Benchmark
+    public int solutionByDistance() {
+        return Solution.solutionByDistance(DIMENSIONS, START_POINT, END_POINT, distance);
+    }
+
+    @Benchmark
+    public long solutionByCounting() {
+        return Solution.solutionByCounting(DIMENSIONS, START_POINT, END_POINT, distance);
+    }
+
+}
@@ -0,0 +1,46 @@
+package foobar.benchmarks;
+
+import foobar.guardfight.Solution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the striped image sweep of the challenge's first example room at increasing parallelism levels. The
+ * speed-up of a level is the average time at a parallelism of 1 over the level's average time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GuardFightParallelBenchmark {
+
+    private static final int[] DIMENSIONS = { 3, 2 };
+
+    private static final int[] START_POINT = { 1, 1 };
+
+    private static final int[] END_POINT = { 2, 1 };
+
+    @Param({ "2000" })
+    private int distance;
+
+    @Param({ "1", "2", "4", "8" })
+    private int parallelism;
+
+    @Benchmark
+    public int solutionInParallel() {
+        return Solution.solutionInParallel(DIMENSIONS, START_POINT, END_POINT, distance, parallelism);
+    }
+
+}
@@ -0,0 +1,60 @@
+package foobar.benchmarks;
+
+import foobar.ironflux.Solution;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves a batch of converter labels with the arithmetic resolver, the cached parent tables and the
+ * materialized node tree, by tree height.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IronFluxBenchmark {
+
+    @Param({ "5", "10", "15", "20" })
+    private int height;
+
+    @Param({ "1000" })
+    private int queries;
+
+    private int[] converters;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(height);
+        converters = random.ints(queries, 1, 1 << height).toArray();
+    }
+
+    @Benchmark
+    public int[] solution() {
+        return Solution.solution(height, converters);
+    }
+
+    @Benchmark
+    public int[] solutionBatch() {
+        return Solution.solutionBatch(height, converters);
+    }
+
+    @Benchmark
+    public int[] solutionFromTree() {
+        return Solution.solutionFromTree(height, converters);
+    }
+
+}
@@ -0,0 +1,286 @@
+package foobar.runner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a file of test cases through the solvers, one case per line. Each line names the solver followed by
+ * its input, such as "disorderly-escape 2, 3, 4", and blank lines or lines starting with # are skipped. Every
+ * case runs on its own virtual thread, with at most a fixed number running at once, and the results are
+ * written in input order as they become available. Each result line holds the input line number, the status
+ * and the output or error message, separated by tabs.
+ * <p>
+ * The solvers never check for interrupts, so a case past its timeout cannot be stopped. It is abandoned
+ * instead, and gives its running permit back at once so the rest of the batch keeps its concurrency, but
+ * it holds its carrier thread until it finishes. Raise jdk.virtualThreadScheduler.parallelism above the
+ * concurrency to leave carriers for the other cases when some are expected to run away.
+ */
+public final class BatchRunner {
+
+    public static final int DEFAULT_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * The counts of a finished batch.
+     */
+    public record Stats(long cases, long succeeded, long failed, long timedOut, Duration elapsed) {
+
+        /**
+         * Returns the number of cases finished per second.
+         */
+        public double throughput() {
+            return cases / Math.max(1e-9, elapsed.toNanos() / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "cases=%d succeeded=%d failed=%d timedOut=%d time=%.3fs throughput=%.1f/s",
+                    cases, succeeded, failed, timedOut, elapsed.toNanos() / 1e9, throughput());
+        }
+
+    }
+
+    private record Result(String status, String output, long elapsedNanos) {
+    }
+
+    /**
+     * A submitted case, with the time it started running or 0 while it waits for a carrier thread.
+     */
+    private record Pending(int lineNumber, Future<Result> result, AtomicLong startedAt, Permit permit) {
+    }
+
+    /**
+     * A running permit, given back once by whichever comes first of the case finishing and the writer
+     * abandoning it.
+     */
+    private static final class Permit {
+
+        private final Semaphore semaphore;
+
+        private final AtomicBoolean held = new AtomicBoolean(true);
+
+        Permit(Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        void release() {
+            if (held.compareAndSet(true, false)) semaphore.release();
+        }
+
+    }
+
+    /**
+     * Marks the end of the cases in the queue of pending results.
+     */
+    private static final Pending END = new Pending(-1, null, null, null);
+
+    /**
+     * How long to wait on a case that has not started yet before checking again.
+     */
+    private static final long START_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * How long to wait for room in the queue, or for a running permit, before checking the writer is still going.
+     */
+    private static final long WRITER_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Map<String, Solver<?, ?>> solvers;
+
+    private final int concurrency;
+
+    private final Duration timeout;
+
+    public BatchRunner(Map<String, Solver<?, ?>> solvers, int concurrency, Duration timeout) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        this.solvers = solvers;
+        this.concurrency = concurrency;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Runs every case read from the input, writing the results to the output in input order.
+     *
+     * @param input  the cases, one per line
+     * @param output  the results, one per case
+     * @return  the counts of the batch
+     * @throws IOException  if the input cannot be read or the output written
+     * @throws InterruptedException  if interrupted while waiting for a case
+     */
+    public Stats run(BufferedReader input, Writer output) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Semaphore running = new Semaphore(concurrency);
+        // Bounding the queue also bounds the results waiting behind a slow case.
+        BlockingQueue<Pending> pending = new ArrayBlockingQueue<>(concurrency * 4);
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        // The writer gets a platform thread, so busy solvers cannot keep it off the carrier threads.
+        FutureTask<long[]> writer = new FutureTask<>(() -> writeResults(pending, output));
+        Thread.ofPlatform().name("batch-writer").daemon().start(writer);
+        try {
+            int lineNumber = 0;
+            for (String line; (line = input.readLine()) != null; ) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+                while (!running.tryAcquire(WRITER_POLL_NANOS, TimeUnit.NANOSECONDS)) checkWriter(writer);
+                Permit permit = new Permit(running);
+                AtomicLong startedAt = new AtomicLong();
+                Future<Result> result = executor.submit(() -> {
+                    try {
+                        startedAt.set(System.nanoTime());
+                        return solve(trimmed);
+                    } finally {
+                        permit.release();
+                    }
+                });
+                enqueue(pending, new Pending(lineNumber, result, startedAt, permit), writer);
+            }
+            enqueue(pending, END, writer);
+            long[] counts = getCounts(writer);
+            return new Stats(counts[0] + counts[1] + counts[2], counts[0], counts[1], counts[2],
+                    Duration.ofNanos(System.nanoTime() - start));
+        } finally {
+            // Solvers do not check for interrupts, so timed out cases are abandoned rather than awaited.
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Solves a single case, catching any failure as its result.
+     */
+    private Result solve(String line) {
+        long start = System.nanoTime();
+        int split = 0;
+        while (split < line.length() && !Character.isWhitespace(line.charAt(split))) split++;
+        String name = line.substring(0, split);
+        Solver<?, ?> solver = solvers.get(name);
+        try {
+            if (solver == null) throw new IllegalArgumentException("Unknown solver: " + name);
+            String output = solver.solveText(line.substring(split));
+            return new Result("OK", output, System.nanoTime() - start);
+        } catch (RuntimeException | StackOverflowError e) {
+            return new Result("ERROR", String.valueOf(e), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes the result of each pending case in order, waiting for each until the timeout has passed since
+     * it started.
+     *
+     * @return  the counts of succeeded, failed and timed out cases
+     */
+    private long[] writeResults(BlockingQueue<Pending> pending, Writer output) throws Exception {
+        long[] counts = new long[3];
+        for (Pending next; (next = pending.take()) != END; ) {
+            Result result = awaitResult(next);
+            if (result == null || result.elapsedNanos() > timeout.toNanos()) {
+                result = new Result("TIMEOUT", "exceeded " + timeout.toMillis() + "ms", 0);
+            }
+            counts[result.status().equals("OK") ? 0 : result.status().equals("ERROR") ? 1 : 2]++;
+            output.write(next.lineNumber() + "\t" + result.status() + "\t" + result.output() + "\n");
+            // Flush whenever the writer catches up, so results stream out rather than wait for the batch.
+            if (pending.isEmpty()) output.flush();
+        }
+        output.flush();
+        return counts;
+    }
+
+    /**
+     * Returns the result of the case, or null if it runs past the timeout, which abandons it and gives its
+     * permit back.
+     */
+    private Result awaitResult(Pending next) throws InterruptedException {
+        while (true) {
+            long startedAt = next.startedAt().get();
+            long wait = startedAt == 0 ? START_POLL_NANOS : startedAt + timeout.toNanos() - System.nanoTime();
+            try {
+                return next.result().get(Math.max(0, wait), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                if (startedAt == 0) continue;
+                next.result().cancel(true);
+                next.permit().release();
+                return null;
+            } catch (ExecutionException e) {
+                return new Result("ERROR", String.valueOf(e.getCause()), 0);
+            }
+        }
+    }
+
+    /**
+     * Queues a case for the writer. If the writer has failed, this throws its exception instead of waiting
+     * for room that will never come.
+     */
+    private static void enqueue(BlockingQueue<Pending> pending, Pending next, Future<long[]> writer)
+            throws IOException, InterruptedException {
+        while (!pending.offer(next, WRITER_POLL_NANOS, TimeUnit.NANOSECONDS)) checkWriter(writer);
+    }
+
+    /**
+     * Throws the writer's exception if it has stopped before the end of the cases.
+     */
+    private static void checkWriter(Future<long[]> writer) throws IOException, InterruptedException {
+        if (!writer.isDone()) return;
+        getCounts(writer);
+        throw new IllegalStateException("Writing results stopped before the end of the cases");
+    }
+
+    private static long[] getCounts(Future<long[]> writer) throws IOException, InterruptedException {
+        try {
+            return writer.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) throw cause;
+            throw new IllegalStateException("Writing results failed", e.getCause());
+        }
+    }
+
+    /**
+     * Runs a batch file. Arguments are the input file, or - for standard input, then optionally the output
+     * file, the concurrency and the per case timeout in milliseconds. The counts are printed to standard error.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("usage: BatchRunner <input|-> [output|-] [concurrency] [timeout-ms]");
+            System.exit(2);
+        }
+        int concurrency = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CONCURRENCY;
+        Duration timeout = args.length > 3 ? Duration.ofMillis(Long.parseLong(args[3])) : DEFAULT_TIMEOUT;
+        Map<String, Solver<?, ?>> solvers = Solver.loadAll();
+        // Flight recordings of the batch get the solver phases as events.
+        SolverPhases.install(solvers);
+        BatchRunner runner = new BatchRunner(solvers, concurrency, timeout);
+        boolean isStandardInput = args[0].equals("-");
+        boolean isStandardOutput = args.length < 2 || args[1].equals("-");
+        try (BufferedReader input = isStandardInput ?
+                new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)) :
+                Files.newBufferedReader(Path.of(args[0]));
+             Writer output = isStandardOutput ?
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8) :
+                Files.newBufferedWriter(Path.of(args[1]))) {
+            Stats stats = runner.run(input, output);
+            System.err.println(stats);
+        }
+    }
+
+}
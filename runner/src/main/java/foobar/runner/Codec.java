@@ -0,0 +1,47 @@
+package foobar.runner;
+
+import java.util.function.Function;
+
+/**
+ * Converts the values a solver takes or returns to and from their text form, which is the notation of the
+ * challenge's test cases.
+ *
+ * @param <T>  the type of value
+ */
+public interface Codec<T> {
+
+    /**
+     * Returns the value written in the text.
+     *
+     * @param text  the text form of the value
+     * @return  the value
+     * @throws IllegalArgumentException  if the text is not a valid value
+     */
+    T decode(String text);
+
+    /**
+     * Returns the text form of the value.
+     *
+     * @param value  the value
+     * @return  the text form of the value
+     */
+    String encode(T value);
+
+    /**
+     * Returns a codec from a pair of functions.
+     */
+    static <T> Codec<T> of(Function<String, T> decoder, Function<T, String> encoder) {
+        return new Codec<>() {
+            @Override
+            public T decode(String text) {
+                return decoder.apply(text);
+            }
+
+            @Override
+            public String encode(T value) {
+                return encoder.apply(value);
+            }
+        };
+    }
+
+}
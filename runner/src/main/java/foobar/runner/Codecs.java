@@ -0,0 +1,70 @@
+package foobar.runner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The codecs shared by the solvers. Arguments are separated by commas or whitespace outside of brackets, and
+ * arrays are written in brackets, so "[3, 2], [1, 1], [2, 1], 4" holds four arguments.
+ */
+public final class Codecs {
+
+    public static final Codec<Integer> INT = Codec.of(text -> Integer.parseInt(text.trim()), String::valueOf);
+
+    public static final Codec<Long> LONG = Codec.of(text -> Long.parseLong(text.trim()), String::valueOf);
+
+    public static final Codec<String> STRING = Codec.of(String::trim, value -> value);
+
+    public static final Codec<int[]> INT_ARRAY = Codec.of(Codecs::parseIntArray, Codecs::formatIntArray);
+
+    private Codecs() {
+    }
+
+    /**
+     * Returns the top level arguments of the text, checking there are exactly as many as expected.
+     *
+     * @param text  the arguments
+     * @param expected  the number of arguments expected
+     * @return  the text of each argument
+     */
+    public static String[] split(String text, int expected) {
+        List<String> arguments = new ArrayList<>();
+        int depth = 0, start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            boolean isSeparator = depth == 0 && (c == ',' || Character.isWhitespace(c));
+            if (c == '[') depth++;
+            if (c == ']') depth--;
+            if (depth < 0) throw new IllegalArgumentException("Unbalanced brackets: " + text);
+            if (isSeparator) {
+                if (start >= 0) arguments.add(text.substring(start, i));
+                start = -1;
+            } else if (start < 0) {
+                start = i;
+            }
+        }
+        if (depth != 0) throw new IllegalArgumentException("Unbalanced brackets: " + text);
+        if (arguments.size() != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " arguments but found " + arguments.size()
+                    + ": " + text);
+        }
+        return arguments.toArray(new String[0]);
+    }
+
+    private static int[] parseIntArray(String text) {
+        String trimmed = text.trim();
+        if (!trimmed.startsWith("[") || !trimmed.endsWith("]")) {
+            throw new IllegalArgumentException("Expected an array in brackets: " + text);
+        }
+        String body = trimmed.substring(1, trimmed.length() - 1).trim();
+        if (body.isEmpty()) return new int[0];
+        return Arrays.stream(body.split(",")).mapToInt(value -> Integer.parseInt(value.trim())).toArray();
+    }
+
+    private static String formatIntArray(int[] values) {
+        return Arrays.stream(values).mapToObj(String::valueOf).collect(Collectors.joining(",", "[", "]"));
+    }
+
+}
@@ -0,0 +1,42 @@
+package foobar.runner;
+
+/**
+ * Solves disorderly-escape. The input is the width, the height and the size, such as "2, 3, 4".
+ */
+public final class DisorderlyEscapeSolver implements Solver<DisorderlyEscapeSolver.Input, String> {
+
+    public record Input(int width, int height, int size) {
+    }
+
+    private static final Codec<Input> INPUT_CODEC = Codec.of(text -> {
+        String[] arguments = Codecs.split(text, 3);
+        return new Input(Codecs.INT.decode(arguments[0]), Codecs.INT.decode(arguments[1]),
+                Codecs.INT.decode(arguments[2]));
+    }, input -> input.width() + ", " + input.height() + ", " + input.size());
+
+    @Override
+    public String getName() {
+        return "disorderly-escape";
+    }
+
+    @Override
+    public Codec<Input> getInputCodec() {
+        return INPUT_CODEC;
+    }
+
+    @Override
+    public Codec<String> getOutputCodec() {
+        return Codecs.STRING;
+    }
+
+    @Override
+    public String solve(Input input) {
+        return foobar.disorderlyescape.Solution.solution(input.width(), input.height(), input.size());
+    }
+
+    @Override
+    public void setPhaseListener(PhaseListener listener) {
+        foobar.disorderlyescape.Solution.setPhaseListener(listener == null ? null : listener::phaseEnded);
+    }
+
+}
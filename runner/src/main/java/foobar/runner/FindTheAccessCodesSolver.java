@@ -0,0 +1,33 @@
+package foobar.runner;
+
+/**
+ * Solves find-the-access-codes. The input is the array of numbers, such as "[1, 2, 3, 4, 5, 6]".
+ */
+public final class FindTheAccessCodesSolver implements Solver<int[], Long> {
+
+    @Override
+    public String getName() {
+        return "find-the-access-codes";
+    }
+
+    @Override
+    public Codec<int[]> getInputCodec() {
+        return Codecs.INT_ARRAY;
+    }
+
+    @Override
+    public Codec<Long> getOutputCodec() {
+        return Codecs.LONG;
+    }
+
+    @Override
+    public Long solve(int[] input) {
+        return foobar.accesscodes.Solution.solution(input, foobar.accesscodes.Solution.Strategy.QUADRATIC);
+    }
+
+    @Override
+    public void setPhaseListener(PhaseListener listener) {
+        foobar.accesscodes.Solution.setPhaseListener(listener == null ? null : listener::phaseEnded);
+    }
+
+}
@@ -0,0 +1,33 @@
+package foobar.runner;
+
+/**
+ * Solves fuel-injection-perfection. The input is the decimal number, such as "15".
+ */
+public final class FuelInjectionPerfectionSolver implements Solver<String, Integer> {
+
+    @Override
+    public String getName() {
+        return "fuel-injection-perfection";
+    }
+
+    @Override
+    public Codec<String> getInputCodec() {
+        return Codecs.STRING;
+    }
+
+    @Override
+    public Codec<Integer> getOutputCodec() {
+        return Codecs.INT;
+    }
+
+    @Override
+    public Integer solve(String input) {
+        return foobar.fuelinjection.Solution.solutionFromBinary(input);
+    }
+
+    @Override
+    public void setPhaseListener(PhaseListener listener) {
+        foobar.fuelinjection.Solution.setPhaseListener(listener == null ? null : listener::phaseEnded);
+    }
+
+}
@@ -0,0 +1,46 @@
+package foobar.runner;
+
+/**
+ * Solves bringing-a-gun-to-a-guard-fight. The input is the dimensions, the start, the end and the distance,
+ * such as "[3, 2], [1, 1], [2, 1], 4".
+ */
+public final class GuardFightSolver implements Solver<GuardFightSolver.Input, Integer> {
+
+    public record Input(int[] dimensions, int[] startPoint, int[] endPoint, int distance) {
+    }
+
+    private static final Codec<Input> INPUT_CODEC = Codec.of(text -> {
+        String[] arguments = Codecs.split(text, 4);
+        return new Input(Codecs.INT_ARRAY.decode(arguments[0]), Codecs.INT_ARRAY.decode(arguments[1]),
+                Codecs.INT_ARRAY.decode(arguments[2]), Codecs.INT.decode(arguments[3]));
+    }, input -> String.join(", ", Codecs.INT_ARRAY.encode(input.dimensions()),
+            Codecs.INT_ARRAY.encode(input.startPoint()), Codecs.INT_ARRAY.encode(input.endPoint()),
+            String.valueOf(input.distance())));
+
+    @Override
+    public String getName() {
+        return "bringing-a-gun-to-a-guard-fight";
+    }
+
+    @Override
+    public Codec<Input> getInputCodec() {
+        return INPUT_CODEC;
+    }
+
+    @Override
+    public Codec<Integer> getOutputCodec() {
+        return Codecs.INT;
+    }
+
+    @Override
+    public Integer solve(Input input) {
+        return foobar.guardfight.Solution.solution(input.dimensions(), input.startPoint(), input.endPoint(),
+                input.distance());
+    }
+
+    @Override
+    public void setPhaseListener(PhaseListener listener) {
+        foobar.guardfight.Solution.setPhaseListener(listener == null ? null : listener::phaseEnded);
+    }
+
+}
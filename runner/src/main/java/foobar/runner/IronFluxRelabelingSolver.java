@@ -0,0 +1,41 @@
+package foobar.runner;
+
+/**
+ * Solves iron_flux_relabeling. The input is the height and the converter labels, such as "3, [7, 3, 5, 1]".
+ */
+public final class IronFluxRelabelingSolver implements Solver<IronFluxRelabelingSolver.Input, int[]> {
+
+    public record Input(int height, int[] converters) {
+    }
+
+    private static final Codec<Input> INPUT_CODEC = Codec.of(text -> {
+        String[] arguments = Codecs.split(text, 2);
+        return new Input(Codecs.INT.decode(arguments[0]), Codecs.INT_ARRAY.decode(arguments[1]));
+    }, input -> input.height() + ", " + Codecs.INT_ARRAY.encode(input.converters()));
+
+    @Override
+    public String getName() {
+        return "iron_flux_relabeling";
+    }
+
+    @Override
+    public Codec<Input> getInputCodec() {
+        return INPUT_CODEC;
+    }
+
+    @Override
+    public Codec<int[]> getOutputCodec() {
+        return Codecs.INT_ARRAY;
+    }
+
+    @Override
+    public int[] solve(Input input) {
+        return foobar.ironflux.Solution.solution(input.height(), input.converters());
+    }
+
+    @Override
+    public void setPhaseListener(PhaseListener listener) {
+        foobar.ironflux.Solution.setPhaseListener(listener == null ? null : listener::phaseEnded);
+    }
+
+}
@@ -0,0 +1,51 @@
+package foobar.runner;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the most recent requests to a solver, from which percentiles are read.
+ */
+final class LatencyRecorder {
+
+    private final long[] latencies;
+
+    private long count;
+
+    LatencyRecorder(int capacity) {
+        this.latencies = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        latencies[(int) (count++ % latencies.length)] = nanos;
+    }
+
+    /**
+     * Returns the number of requests recorded, including those no longer held.
+     */
+    synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the latencies at each of the percentiles among the requests held, or zeros if there are none.
+     *
+     * @param percentiles  the percentiles, between 0 and 100
+     * @return  the latency in nanoseconds at each percentile
+     */
+    long[] getPercentiles(double... percentiles) {
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(latencies, (int) Math.min(count, latencies.length));
+        }
+        Arrays.sort(sorted);
+        long[] result = new long[percentiles.length];
+        if (sorted.length == 0) return result;
+        for (int i = 0; i < percentiles.length; i++) {
+            // The nearest rank method, so every percentile is an observed latency.
+            int rank = (int) Math.ceil(percentiles[i] / 100 * sorted.length);
+            result[i] = sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+        return result;
+    }
+
+}
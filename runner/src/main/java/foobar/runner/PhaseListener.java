@@ -0,0 +1,21 @@
+package foobar.runner;
+
+/**
+ * Receives the internal phases of a solver's engines as they finish. Each packaged solution declares its own
+ * listener interface with the same method, so a solver adapts this one with a method reference.
+ */
+@FunctionalInterface
+public interface PhaseListener {
+
+    /**
+     * Called when a phase finishes, on the thread which ran it.
+     *
+     * @param engine  the engine which ran the phase
+     * @param phase  the phase, such as build, enumerate or reduce
+     * @param durationNanos  the wall clock duration of the phase
+     * @param workCount  the units of work done, which depend on the engine and phase
+     * @param allocatedBytes  the bytes allocated by the thread which ran the phase, or -1 if unknown
+     */
+    void phaseEnded(String engine, String phase, long durationNanos, long workCount, long allocatedBytes);
+
+}
@@ -0,0 +1,154 @@
+package foobar.runner;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A size bounded cache of solver results which keeps the results that were most expensive to compute for
+ * their size. It uses the GreedyDual-Size policy: each entry is ranked by the cost of computing it divided by
+ * its size, plus an inflation value that rises to the rank of every evicted entry, so entries which are not
+ * hit again age out even when they were expensive.
+ */
+final class ResultCache {
+
+    /**
+     * The approximate bytes taken by an entry besides its key and value.
+     */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final String key;
+
+        private final String value;
+
+        private final long size;
+
+        private final double costPerByte;
+
+        private double priority;
+
+        /**
+         * Breaks ties between equal priorities, so the set holds every entry.
+         */
+        private long sequence;
+
+        Entry(String key, String value, long costNanos) {
+            this.key = key;
+            this.value = value;
+            this.size = ENTRY_OVERHEAD + 2L * (key.length() + value.length());
+            this.costPerByte = (double) costNanos / size;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int order = Double.compare(priority, other.priority);
+            return order != 0 ? order : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+    private final long maxBytes;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final TreeSet<Entry> byPriority = new TreeSet<>();
+
+    private double inflation;
+
+    private long sequence;
+
+    private long bytes;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    ResultCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached result for the key, or null if there is none.
+     */
+    synchronized String get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        // A hit restores the entry's full priority at the current inflation.
+        byPriority.remove(entry);
+        rank(entry);
+        byPriority.add(entry);
+        return entry.value;
+    }
+
+    /**
+     * Returns the cached result for the key without counting a hit or miss or ranking it again, or null if
+     * there is none.
+     */
+    synchronized String peek(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * Caches a result, evicting the lowest ranked entries until it fits. Results larger than the whole
+     * cache are not kept.
+     *
+     * @param key  the key of the result
+     * @param value  the result
+     * @param costNanos  the time it took to compute the result
+     */
+    synchronized void put(String key, String value, long costNanos) {
+        Entry entry = new Entry(key, value, costNanos);
+        if (entry.size > maxBytes) return;
+        Entry old = entries.remove(key);
+        if (old != null) {
+            byPriority.remove(old);
+            bytes -= old.size;
+        }
+        while (bytes + entry.size > maxBytes) {
+            Entry evicted = byPriority.pollFirst();
+            entries.remove(evicted.key);
+            bytes -= evicted.size;
+            inflation = evicted.priority;
+            evictions++;
+        }
+        rank(entry);
+        entries.put(key, entry);
+        byPriority.add(entry);
+        bytes += entry.size;
+    }
+
+    private void rank(Entry entry) {
+        entry.priority = inflation + entry.costPerByte;
+        entry.sequence = sequence++;
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+}
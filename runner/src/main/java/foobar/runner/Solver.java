@@ -0,0 +1,72 @@
+package foobar.runner;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * A challenge solution behind a common interface, with codecs for its input and output. Implementations are
+ * found with ServiceLoader, so more can be added by listing them in META-INF/services/foobar.runner.Solver.
+ *
+ * @param <I>  the type of input
+ * @param <O>  the type of output
+ */
+public interface Solver<I, O> {
+
+    /**
+     * Returns the name of the challenge, which selects the solver in a batch file.
+     */
+    String getName();
+
+    Codec<I> getInputCodec();
+
+    Codec<O> getOutputCodec();
+
+    /**
+     * Returns the solution for the input.
+     *
+     * @param input  the input
+     * @return  the output
+     */
+    O solve(I input);
+
+    /**
+     * Returns the text form of the solution for an input in text form.
+     *
+     * @param input  the text form of the input
+     * @return  the text form of the output
+     * @throws IllegalArgumentException  if the input is not valid
+     */
+    default String solveText(String input) {
+        return getOutputCodec().encode(solve(getInputCodec().decode(input)));
+    }
+
+    /**
+     * Returns the input rewritten in the codec's own text form, so equal inputs written differently match.
+     *
+     * @param input  the text form of the input
+     * @return  the canonical text form of the input
+     * @throws IllegalArgumentException  if the input is not valid
+     */
+    default String canonicalize(String input) {
+        return getInputCodec().encode(getInputCodec().decode(input));
+    }
+
+    /**
+     * Sets the listener to report the solver's engine phases to, or null to stop reporting. The listener is
+     * shared by every instance of the solver, as the solutions hold it statically.
+     *
+     * @param listener  the listener, or null
+     */
+    void setPhaseListener(PhaseListener listener);
+
+    /**
+     * Returns every solver on the class path by name.
+     */
+    static Map<String, Solver<?, ?>> loadAll() {
+        Map<String, Solver<?, ?>> solvers = new LinkedHashMap<>();
+        for (Solver<?, ?> solver : ServiceLoader.load(Solver.class)) solvers.put(solver.getName(), solver);
+        return solvers;
+    }
+
+}
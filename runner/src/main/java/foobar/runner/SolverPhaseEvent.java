@@ -0,0 +1,46 @@
+package foobar.runner;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event for a finished phase of a solver engine. The phase is measured by the solution
+ * itself, so its duration is a field rather than the event's own duration. View the events with
+ * {@code jfr print --events foobar.SolverPhase recording.jfr}.
+ */
+@Name("foobar.SolverPhase")
+@Label("Solver Phase")
+@Category("FooBar")
+@Description("A phase of a solver engine, such as build, enumerate or reduce")
+@StackTrace(false)
+final class SolverPhaseEvent extends Event {
+
+    @Label("Solver")
+    String solver;
+
+    @Label("Engine")
+    String engine;
+
+    @Label("Phase")
+    String phase;
+
+    @Label("Phase Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long phaseDuration;
+
+    @Label("Work Count")
+    @Description("The units of work done, which depend on the engine and phase")
+    long workCount;
+
+    @Label("Allocated")
+    @Description("The bytes allocated by the thread which ran the phase, or -1 if unknown")
+    @DataAmount
+    long allocatedBytes;
+
+}
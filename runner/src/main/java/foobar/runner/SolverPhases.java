@@ -0,0 +1,149 @@
+package foobar.runner;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports the engine phases of the solvers as SolverPhaseEvent flight recorder events and, when enabled, as
+ * counters totalled per solver, engine and phase. The solvers only get a phase listener while a recording has
+ * the event enabled or the counters are enabled, so phases cost nothing otherwise. Recordings started and
+ * stopped at any time, such as with {@code jcmd <pid> JFR.start}, are picked up through a recorder listener.
+ * As the solutions hold their listeners statically, only one instance should be installed per process.
+ */
+public final class SolverPhases implements FlightRecorderListener {
+
+    /**
+     * The totals of a phase.
+     *
+     * @param count  the number of times the phase ran
+     * @param nanos  the total duration
+     * @param workCount  the total units of work
+     * @param allocatedBytes  the total bytes allocated, over the phases where it was known
+     */
+    public record Totals(long count, long nanos, long workCount, long allocatedBytes) {
+    }
+
+    private record Key(String solver, String engine, String phase) implements Comparable<Key> {
+
+        @Override
+        public int compareTo(Key other) {
+            int compared = solver.compareTo(other.solver);
+            if (compared == 0) compared = engine.compareTo(other.engine);
+            return compared != 0 ? compared : phase.compareTo(other.phase);
+        }
+
+    }
+
+    private static final class Counters {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder nanos = new LongAdder();
+
+        private final LongAdder workCount = new LongAdder();
+
+        private final LongAdder allocatedBytes = new LongAdder();
+
+    }
+
+    private final Map<String, Solver<?, ?>> solvers;
+
+    private final Map<Key, Counters> counters = new ConcurrentHashMap<>();
+
+    private volatile boolean countersEnabled;
+
+    private boolean listening;
+
+    private SolverPhases(Map<String, Solver<?, ?>> solvers) {
+        this.solvers = solvers;
+    }
+
+    /**
+     * Starts following recordings for the solvers, with the counters disabled.
+     *
+     * @param solvers  the solvers by name
+     * @return  the installed instance
+     */
+    public static SolverPhases install(Map<String, Solver<?, ?>> solvers) {
+        SolverPhases phases = new SolverPhases(solvers);
+        FlightRecorder.addListener(phases);
+        phases.update();
+        return phases;
+    }
+
+    /**
+     * Enables or disables the counters. Disabling them keeps the totals so far.
+     */
+    public void setCountersEnabled(boolean enabled) {
+        countersEnabled = enabled;
+        update();
+    }
+
+    public boolean isCountersEnabled() {
+        return countersEnabled;
+    }
+
+    /**
+     * Returns the totals of every phase counted so far, by solver, engine and phase.
+     */
+    public Map<String, Map<String, Map<String, Totals>>> getTotals() {
+        Map<String, Map<String, Map<String, Totals>>> totals = new TreeMap<>();
+        for (Map.Entry<Key, Counters> entry : new TreeMap<>(counters).entrySet()) {
+            Key key = entry.getKey();
+            Counters phase = entry.getValue();
+            totals.computeIfAbsent(key.solver(), solver -> new TreeMap<>())
+                    .computeIfAbsent(key.engine(), engine -> new TreeMap<>())
+                    .put(key.phase(), new Totals(phase.count.sum(), phase.nanos.sum(), phase.workCount.sum(),
+                            phase.allocatedBytes.sum()));
+        }
+        return totals;
+    }
+
+    @Override
+    public void recordingStateChanged(Recording recording) {
+        update();
+    }
+
+    /**
+     * Gives the solvers a listener if anything is following the phases, and takes it away otherwise.
+     */
+    private synchronized void update() {
+        boolean follow = countersEnabled || EventType.getEventType(SolverPhaseEvent.class).isEnabled();
+        if (follow == listening) return;
+        listening = follow;
+        for (Solver<?, ?> solver : solvers.values()) {
+            String name = solver.getName();
+            solver.setPhaseListener(follow ? (engine, phase, durationNanos, workCount, allocatedBytes) ->
+                    phaseEnded(name, engine, phase, durationNanos, workCount, allocatedBytes) : null);
+        }
+    }
+
+    private void phaseEnded(String solver, String engine, String phase, long durationNanos, long workCount,
+                            long allocatedBytes) {
+        SolverPhaseEvent event = new SolverPhaseEvent();
+        if (event.shouldCommit()) {
+            event.solver = solver;
+            event.engine = engine;
+            event.phase = phase;
+            event.phaseDuration = durationNanos;
+            event.workCount = workCount;
+            event.allocatedBytes = allocatedBytes;
+            event.commit();
+        }
+        if (countersEnabled) {
+            Counters phaseCounters = counters.computeIfAbsent(new Key(solver, engine, phase), key -> new Counters());
+            phaseCounters.count.increment();
+            phaseCounters.nanos.add(durationNanos);
+            phaseCounters.workCount.add(workCount);
+            if (allocatedBytes > 0) phaseCounters.allocatedBytes.add(allocatedBytes);
+        }
+    }
+
+}
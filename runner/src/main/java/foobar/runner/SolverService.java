@@ -0,0 +1,284 @@
+package foobar.runner;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the solvers over HTTP, handling each request on its own virtual thread.
+ * <ul>
+ *     <li>POST /solve/{name} solves the input in the request body, and GET /solve/{name}?input=... the input
+ *     in the query. The output is returned as plain text, or an error with status 400 for invalid input and
+ *     404 for unknown solvers.</li>
+ *     <li>GET /stats returns the request counts, cache counts and latency percentiles of each solver as JSON.</li>
+ *     <li>GET /phases returns the phase counters of each solver engine as JSON, and POST /phases?counters=on
+ *     or off enables or disables them. Flight recordings get the phases as events whether or not the counters
+ *     are enabled.</li>
+ * </ul>
+ * Results are cached by solver and canonical input in a cost-aware ResultCache, and concurrent requests for
+ * the same uncached input wait on a single computation rather than each starting their own.
+ */
+public final class SolverService {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    public static final long DEFAULT_CACHE_BYTES = 64L << 20;
+
+    /**
+     * The number of recent requests per solver the latency percentiles are taken from.
+     */
+    private static final int LATENCY_WINDOW = 1 << 14;
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 100 };
+
+    private final Map<String, Solver<?, ?>> solvers;
+
+    private final ResultCache cache;
+
+    private final Map<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<String, LatencyRecorder> latencies = new TreeMap<>();
+
+    private final Map<String, AtomicLong> computations = new TreeMap<>();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final SolverPhases phases;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public SolverService(Map<String, Solver<?, ?>> solvers, InetSocketAddress address, long maxCacheBytes)
+            throws IOException {
+        this.solvers = solvers;
+        this.cache = new ResultCache(maxCacheBytes);
+        this.phases = SolverPhases.install(solvers);
+        for (String name : solvers.keySet()) {
+            latencies.put(name, new LatencyRecorder(LATENCY_WINDOW));
+            computations.put(name, new AtomicLong());
+        }
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/solve/", this::handleSolve);
+        server.createContext("/stats", this::handleStats);
+        server.createContext("/phases", this::handlePhases);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, giving those in progress up to the delay to finish.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the address the service is bound to, which holds the chosen port when bound to port 0.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Returns the output for the input, from the cache, from a computation already in flight for the same
+     * input, or from a new computation.
+     *
+     * @param solver  the solver
+     * @param input  the text form of the input
+     * @return  the text form of the output
+     * @throws IllegalArgumentException  if the input is not valid
+     */
+    String solve(Solver<?, ?> solver, String input) {
+        String key = solver.getName() + '\n' + solver.canonicalize(input);
+        String cached = cache.get(key);
+        if (cached != null) return cached;
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return join(existing);
+        }
+        try {
+            // Check again, as the result may have been cached since the miss.
+            String output = cache.peek(key);
+            if (output == null) {
+                long start = System.nanoTime();
+                output = solver.solveText(input);
+                cache.put(key, output, System.nanoTime() - start);
+                computations.get(solver.getName()).incrementAndGet();
+            }
+            created.complete(output);
+            return output;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, created);
+        }
+    }
+
+    private static String join(CompletableFuture<String> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String name = exchange.getRequestURI().getPath().substring("/solve/".length());
+            Solver<?, ?> solver = solvers.get(name);
+            if (solver == null) {
+                respond(exchange, 404, "text/plain", "Unknown solver: " + name);
+                return;
+            }
+            String input;
+            if (exchange.getRequestMethod().equals("POST")) {
+                try (InputStream body = exchange.getRequestBody()) {
+                    input = new String(body.readAllBytes(), StandardCharsets.UTF_8);
+                }
+            } else if (exchange.getRequestMethod().equals("GET")) {
+                input = getQueryParameter(exchange.getRequestURI().getRawQuery(), "input");
+                if (input == null) {
+                    respond(exchange, 400, "text/plain", "Missing input parameter");
+                    return;
+                }
+            } else {
+                respond(exchange, 405, "text/plain", "Use GET or POST");
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                String output = solve(solver, input);
+                respond(exchange, 200, "text/plain", output);
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, "text/plain", String.valueOf(e.getMessage()));
+            } catch (RuntimeException | StackOverflowError e) {
+                respond(exchange, 500, "text/plain", String.valueOf(e));
+            } finally {
+                latencies.get(name).record(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            StringJoiner solverStats = new StringJoiner(",", "{", "}");
+            for (Map.Entry<String, LatencyRecorder> entry : latencies.entrySet()) {
+                long[] values = entry.getValue().getPercentiles(PERCENTILES);
+                StringJoiner percentiles = new StringJoiner(",", "{", "}");
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    percentiles.add(String.format(Locale.ROOT, "\"p%s\":%.3f", formatPercentile(PERCENTILES[i]),
+                            values[i] / 1e6));
+                }
+                solverStats.add(String.format(Locale.ROOT,
+                        "\"%s\":{\"requests\":%d,\"computations\":%d,\"latencyMillis\":%s}", entry.getKey(),
+                        entry.getValue().getCount(), computations.get(entry.getKey()).get(), percentiles));
+            }
+            String cacheStats = String.format(Locale.ROOT,
+                    "{\"entries\":%d,\"bytes\":%d,\"hits\":%d,\"misses\":%d,\"evictions\":%d}", cache.size(),
+                    cache.getBytes(), cache.getHits(), cache.getMisses(), cache.getEvictions());
+            respond(exchange, 200, "application/json", String.format(Locale.ROOT,
+                    "{\"solvers\":%s,\"cache\":%s,\"coalesced\":%d}", solverStats, cacheStats, coalesced.get()));
+        }
+    }
+
+    private void handlePhases(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (exchange.getRequestMethod().equals("POST")) {
+                String counters = getQueryParameter(exchange.getRequestURI().getRawQuery(), "counters");
+                if (!"on".equals(counters) && !"off".equals(counters)) {
+                    respond(exchange, 400, "text/plain", "Expected counters=on or counters=off");
+                    return;
+                }
+                phases.setCountersEnabled(counters.equals("on"));
+            } else if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "text/plain", "Use GET or POST");
+                return;
+            }
+            Map<String, Map<String, Map<String, SolverPhases.Totals>>> solverTotals = phases.getTotals();
+            StringJoiner solverPhases = new StringJoiner(",", "{", "}");
+            for (Map.Entry<String, Map<String, Map<String, SolverPhases.Totals>>> solver : solverTotals.entrySet()) {
+                StringJoiner enginePhases = new StringJoiner(",", "{", "}");
+                for (Map.Entry<String, Map<String, SolverPhases.Totals>> engine : solver.getValue().entrySet()) {
+                    StringJoiner totals = new StringJoiner(",", "{", "}");
+                    for (Map.Entry<String, SolverPhases.Totals> phase : engine.getValue().entrySet()) {
+                        SolverPhases.Totals total = phase.getValue();
+                        totals.add(String.format(Locale.ROOT,
+                                "\"%s\":{\"count\":%d,\"millis\":%.3f,\"work\":%d,\"allocatedBytes\":%d}",
+                                phase.getKey(), total.count(), total.nanos() / 1e6, total.workCount(),
+                                total.allocatedBytes()));
+                    }
+                    enginePhases.add(String.format(Locale.ROOT, "\"%s\":%s", engine.getKey(), totals));
+                }
+                solverPhases.add(String.format(Locale.ROOT, "\"%s\":%s", solver.getKey(), enginePhases));
+            }
+            respond(exchange, 200, "application/json", String.format(Locale.ROOT, "{\"counters\":%b,\"solvers\":%s}",
+                    phases.isCountersEnabled(), solverPhases));
+        }
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) :
+                String.valueOf(percentile).replace('.', '_');
+    }
+
+    private static String getQueryParameter(String query, String name) {
+        if (query == null) return null;
+        for (String parameter : query.split("&")) {
+            int split = parameter.indexOf('=');
+            if (split > 0 && URLDecoder.decode(parameter.substring(0, split), StandardCharsets.UTF_8).equals(name)) {
+                return URLDecoder.decode(parameter.substring(split + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Runs the service until the process is stopped. Arguments are optionally the port and the cache size in
+     * bytes.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long cacheBytes = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_CACHE_BYTES;
+        SolverService service = new SolverService(Solver.loadAll(), new InetSocketAddress(port), cacheBytes);
+        service.start();
+        System.err.println("Serving " + String.join(", ", Solver.loadAll().keySet()) + " on port "
+                + service.getAddress().getPort());
+    }
+
+}
@@ -0,0 +1,144 @@
+package foobar.runner;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class BatchRunnerTest {
+
+    /**
+     * Holds the blocking cases until a test is done with them.
+     */
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private final Map<String, Solver<?, ?>> solvers = Map.of(
+            "echo", new TextSolver("echo", input -> input),
+            "sleep", new TextSolver("sleep", input -> {
+                sleep(Long.parseLong(input));
+                return input;
+            }),
+            "block", new TextSolver("block", input -> {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return input;
+            }),
+            "fail", new TextSolver("fail", input -> {
+                throw new IllegalArgumentException(input);
+            }));
+
+    @Test
+    void writesResultsInInputOrder() throws Exception {
+        String input = "sleep 300\nsleep 150\n\n# a comment\necho a b\nsleep 0\n";
+        StringWriter output = new StringWriter();
+        BatchRunner.Stats stats = new BatchRunner(solvers, 4, Duration.ofSeconds(10))
+                .run(new BufferedReader(new StringReader(input)), output);
+        assertEquals("1\tOK\t300\n2\tOK\t150\n5\tOK\ta b\n6\tOK\t0\n", output.toString());
+        assertEquals(4, stats.cases());
+        assertEquals(4, stats.succeeded());
+    }
+
+    @Test
+    void reportsTimeoutsAndErrors() throws Exception {
+        String input = "sleep 5000\nfail bad input\nmissing 1\necho done\n";
+        StringWriter output = new StringWriter();
+        BatchRunner.Stats stats = new BatchRunner(solvers, 4, Duration.ofMillis(200))
+                .run(new BufferedReader(new StringReader(input)), output);
+        assertEquals("1\tTIMEOUT\texceeded 200ms\n"
+                + "2\tERROR\tjava.lang.IllegalArgumentException: bad input\n"
+                + "3\tERROR\tjava.lang.IllegalArgumentException: Unknown solver: missing\n"
+                + "4\tOK\tdone\n", output.toString());
+        assertEquals(4, stats.cases());
+        assertEquals(1, stats.succeeded());
+        assertEquals(2, stats.failed());
+        assertEquals(1, stats.timedOut());
+    }
+
+    @Test
+    void timedOutCaseGivesItsPermitBack() {
+        // With one permit, the cases after the blocked one can only run once it has been abandoned.
+        String input = "block 1\n" + IntStream.range(0, 20).mapToObj(i -> "echo " + i)
+                .collect(Collectors.joining("\n"));
+        StringWriter output = new StringWriter();
+        try {
+            BatchRunner.Stats stats = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+                    new BatchRunner(solvers, 1, Duration.ofMillis(200))
+                            .run(new BufferedReader(new StringReader(input)), output));
+            assertEquals(21, stats.cases());
+            assertEquals(20, stats.succeeded());
+            assertEquals(1, stats.timedOut());
+        } finally {
+            released.countDown();
+        }
+        List<String> lines = output.toString().lines().toList();
+        assertEquals("1\tTIMEOUT\texceeded 200ms", lines.get(0));
+        assertEquals("21\tOK\t19", lines.get(20));
+    }
+
+    @Test
+    void failsWhenTheOutputCannotBeWritten() {
+        // Far more cases than the queue holds, so the reader would wait on the writer forever.
+        String input = IntStream.range(0, 200).mapToObj(i -> "echo " + i).collect(Collectors.joining("\n"));
+        Writer output = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> new BatchRunner(solvers, 2, Duration.ofSeconds(10))
+                        .run(new BufferedReader(new StringReader(input)), output)));
+        assertEquals("disk full", e.getMessage());
+    }
+
+    @Test
+    void formatsStatsTheSameInEveryLocale() {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        try {
+            assertEquals("cases=3 succeeded=1 failed=1 timedOut=1 time=1.500s throughput=2.0/s",
+                    new BatchRunner.Stats(3, 1, 1, 1, Duration.ofMillis(1500)).toString());
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void rejectsANonPositiveConcurrency() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchRunner(solvers, 0, Duration.ofSeconds(1)));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,37 @@
+package foobar.runner;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LatencyRecorderTest {
+
+    @Test
+    void readsZerosBeforeAnyRequest() {
+        LatencyRecorder recorder = new LatencyRecorder(8);
+        assertArrayEquals(new long[]{ 0, 0 }, recorder.getPercentiles(50, 100));
+        assertEquals(0, recorder.getCount());
+    }
+
+    @Test
+    void readsNearestRankPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder(1000);
+        // Recorded out of order, as requests finish.
+        for (int i = 100; i >= 1; i--) recorder.record(i);
+        assertArrayEquals(new long[]{ 1, 1, 50, 90, 99, 100, 100 },
+                recorder.getPercentiles(0, 0.5, 50, 90, 99, 99.9, 100));
+        recorder.record(1000);
+        // 101 requests, so the median is the 51st and the 99th percentile the 100th.
+        assertArrayEquals(new long[]{ 51, 100, 1000 }, recorder.getPercentiles(50, 99, 100));
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentRequests() {
+        LatencyRecorder recorder = new LatencyRecorder(10);
+        for (int i = 1; i <= 25; i++) recorder.record(i);
+        assertEquals(25, recorder.getCount());
+        assertArrayEquals(new long[]{ 16, 20, 25 }, recorder.getPercentiles(0, 50, 100));
+    }
+
+}
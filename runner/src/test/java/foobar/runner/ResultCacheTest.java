@@ -0,0 +1,82 @@
+package foobar.runner;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResultCacheTest {
+
+    /**
+     * The size of an entry with a one character key and value.
+     */
+    private static final long ENTRY_BYTES = 128 + 2 * 2;
+
+    @Test
+    void evictsTheCheapestResultPerByte() {
+        ResultCache cache = new ResultCache(3 * ENTRY_BYTES);
+        cache.put("a", "1", 1000 * ENTRY_BYTES);
+        cache.put("b", "2", ENTRY_BYTES);
+        cache.put("c", "3", 500 * ENTRY_BYTES);
+        assertEquals(3 * ENTRY_BYTES, cache.getBytes());
+        cache.put("d", "4", 2 * ENTRY_BYTES);
+        assertNull(cache.peek("b"));
+        assertEquals("1", cache.peek("a"));
+        assertEquals("3", cache.peek("c"));
+        assertEquals("4", cache.peek("d"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void agesOutExpensiveResultsThatAreNotHit() {
+        ResultCache cache = new ResultCache(2 * ENTRY_BYTES);
+        cache.put("a", "1", 10 * ENTRY_BYTES);
+        cache.put("b", "2", 5 * ENTRY_BYTES);
+        // Each eviction raises the inflation to the evicted rank, so the cheap results soon outrank the expensive.
+        cache.put("c", "3", 3 * ENTRY_BYTES);
+        cache.put("d", "4", 3 * ENTRY_BYTES);
+        assertEquals("1", cache.peek("a"));
+        cache.put("e", "5", 3 * ENTRY_BYTES);
+        assertNull(cache.peek("a"));
+        assertEquals(3, cache.getEvictions());
+    }
+
+    @Test
+    void keepsExpensiveResultsThatAreHit() {
+        ResultCache cache = new ResultCache(2 * ENTRY_BYTES);
+        cache.put("a", "1", 10 * ENTRY_BYTES);
+        for (int i = 0; i < 20; i++) {
+            cache.put(String.valueOf((char) ('b' + i)), "x", 3 * ENTRY_BYTES);
+            // A hit ranks the result again at the current inflation.
+            assertEquals("1", cache.get("a"));
+        }
+        assertEquals(20, cache.getHits());
+        assertEquals(19, cache.getEvictions());
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        ResultCache cache = new ResultCache(10 * ENTRY_BYTES);
+        assertNull(cache.get("a"));
+        cache.put("a", "1", 1);
+        assertEquals("1", cache.get("a"));
+        assertEquals("1", cache.peek("a"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void replacesAResultAndSkipsOnesLargerThanTheCache() {
+        ResultCache cache = new ResultCache(2 * ENTRY_BYTES);
+        cache.put("a", "1", 1);
+        cache.put("a", "2", 1);
+        assertEquals("2", cache.peek("a"));
+        assertEquals(ENTRY_BYTES, cache.getBytes());
+        cache.put("b", "x".repeat(200), 1);
+        assertNull(cache.peek("b"));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.getEvictions());
+    }
+
+}
@@ -0,0 +1,147 @@
+package foobar.runner;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolverServiceTest {
+
+    private final AtomicInteger computations = new AtomicInteger();
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private final Solver<String, String> slow = new TextSolver("slow", input -> {
+        computations.incrementAndGet();
+        try {
+            released.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (input.equals("bad")) throw new IllegalArgumentException("bad input");
+        return input.toUpperCase(Locale.ROOT);
+    });
+
+    private final Solver<String, String> echo = new TextSolver("echo", input -> {
+        computations.incrementAndGet();
+        return input;
+    });
+
+    private SolverService service;
+
+    @AfterEach
+    void stopService() {
+        released.countDown();
+        if (service != null) service.stop(0);
+    }
+
+    @Test
+    void coalescesConcurrentRequestsForTheSameInput() throws Exception {
+        // Nothing fits in the cache, so only coalescing can keep the later requests from computing again.
+        service = newService(0);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            // Inputs written differently but equal once canonicalized share the computation.
+            for (int i = 0; i < 8; i++) {
+                String input = i % 2 == 0 ? "same" : "  same ";
+                results.add(executor.submit(() -> service.solve(slow, input)));
+            }
+            Thread.sleep(500);
+            released.countDown();
+            for (Future<String> result : results) assertEquals("SAME", result.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, computations.get());
+        // Once the computation has finished, the next request computes again as it was not cached.
+        assertEquals("SAME", service.solve(slow, "same"));
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void sharesAFailureWithoutCachingIt() throws Exception {
+        service = newService(1 << 20);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) results.add(executor.submit(() -> service.solve(slow, "bad")));
+            Thread.sleep(500);
+            released.countDown();
+            for (Future<String> result : results) {
+                Exception e = assertThrows(Exception.class, () -> result.get(10, TimeUnit.SECONDS));
+                assertTrue(e.getCause() instanceof IllegalArgumentException, String.valueOf(e));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, computations.get());
+        assertThrows(IllegalArgumentException.class, () -> service.solve(slow, "bad"));
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void cachesResults() throws IOException {
+        service = newService(1 << 20);
+        assertEquals("a", service.solve(echo, "a"));
+        assertEquals("a", service.solve(echo, " a "));
+        assertEquals("b", service.solve(echo, "b"));
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void servesSolutionsAndStatsOverHttp() throws Exception {
+        service = newService(1 << 20);
+        service.start();
+        HttpClient client = HttpClient.newHttpClient();
+        HttpResponse<String> solved = client.send(HttpRequest.newBuilder(uri("/solve/echo?input=hello%20there"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, solved.statusCode());
+        assertEquals("hello there", solved.body());
+        HttpResponse<String> posted = client.send(HttpRequest.newBuilder(uri("/solve/echo"))
+                .POST(HttpRequest.BodyPublishers.ofString("hello there")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        assertEquals("hello there", posted.body());
+        assertEquals(404, client.send(HttpRequest.newBuilder(uri("/solve/missing?input=1")).build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+        assertEquals(400, client.send(HttpRequest.newBuilder(uri("/solve/echo")).build(),
+                HttpResponse.BodyHandlers.ofString()).statusCode());
+        String stats = client.send(HttpRequest.newBuilder(uri("/stats")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+        // Latencies are recorded after the response is sent, so only the counts taken before it are checked.
+        assertTrue(stats.matches(".*\"echo\":\\{\"requests\":\\d+,\"computations\":1,.*"), stats);
+        assertTrue(stats.contains("\"hits\":1,\"misses\":1,"), stats);
+        assertTrue(stats.endsWith("\"coalesced\":0}"), stats);
+    }
+
+    private SolverService newService(long maxCacheBytes) throws IOException {
+        return new SolverService(Map.of("slow", slow, "echo", echo),
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), maxCacheBytes);
+    }
+
+    private URI uri(String path) {
+        InetSocketAddress address = service.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort() + path);
+    }
+
+}
@@ -0,0 +1,43 @@
+package foobar.runner;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * A solver over plain text, for testing the runner without the challenge solutions.
+ */
+final class TextSolver implements Solver<String, String> {
+
+    private final String name;
+
+    private final UnaryOperator<String> solution;
+
+    TextSolver(String name, UnaryOperator<String> solution) {
+        this.name = name;
+        this.solution = solution;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Codec<String> getInputCodec() {
+        return Codecs.STRING;
+    }
+
+    @Override
+    public Codec<String> getOutputCodec() {
+        return Codecs.STRING;
+    }
+
+    @Override
+    public String solve(String input) {
+        return solution.apply(input);
+    }
+
+    @Override
+    public void setPhaseListener(PhaseListener listener) {
+    }
+
+}
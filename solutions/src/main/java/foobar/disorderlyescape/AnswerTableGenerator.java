@@ -0,0 +1,30 @@
+package foobar.disorderlyescape;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Writes a disorderly-escape answer table offline, for Solution.loadAnswerTable to serve from. Arguments are
+ * the table file, the max side and the max size, which default to every grid up to 20 x 20 with sizes up to 20.
+ */
+public final class AnswerTableGenerator {
+
+    private static final int DEFAULT_MAX_SIDE = 20;
+
+    private static final int DEFAULT_MAX_SIZE = 20;
+
+    private AnswerTableGenerator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path file = Paths.get(args.length > 0 ? args[0] : "disorderly-escape.table");
+        int maxSide = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_MAX_SIDE;
+        int maxSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_SIZE;
+        long start = System.nanoTime();
+        Solution.writeAnswerTable(file, maxSide, maxSize);
+        System.out.printf("wrote %s sides=%d sizes=%d time=%.1fs%n", file, maxSide, maxSize,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+}
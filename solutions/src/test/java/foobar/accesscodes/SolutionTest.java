@@ -0,0 +1,104 @@
+package foobar.accesscodes;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class SolutionTest {
+
+    @Test
+    void solvesTheSamples() {
+        assertEquals(1, Solution.solution(new int[]{ 1, 1, 1 }));
+        assertEquals(3, Solution.solution(new int[]{ 1, 2, 3, 4, 5, 6 }));
+    }
+
+    @Test
+    void quadraticMatchesCubic() {
+        Random random = new Random(5);
+        for (int i = 0; i < 300; i++) {
+            int[] numbers = randomNumbers(random, random.nextInt(60), 1 + random.nextInt(50));
+            assertEquals(Solution.solution(numbers, Solution.Strategy.CUBIC),
+                    Solution.solution(numbers, Solution.Strategy.QUADRATIC), Arrays.toString(numbers));
+        }
+    }
+
+    @Test
+    void countsPastTheIntRange() {
+        int[] ones = new int[3000];
+        Arrays.fill(ones, 1);
+        // Every triple of positions, 3000 choose 3.
+        assertEquals(4495501000L, Solution.solution(ones, Solution.Strategy.QUADRATIC));
+    }
+
+    @Test
+    void tripleCounterMatchesQuadraticOnEveryPrefix() {
+        Random random = new Random(13);
+        for (int i = 0; i < 100; i++) {
+            checkEveryPrefix(randomNumbers(random, random.nextInt(80), 1 + random.nextInt(i % 2 == 0 ? 6 : 100)));
+        }
+        // Divisors of Integer.MAX_VALUE - 1 = 2 * 3^2 * 7 * 11 * 31 * 151 * 331, and the values just below it.
+        int[] divisors = { 1, 2, 3, 6, 9, 18, 7, 63, 2 * 3 * 7 * 11 * 31, 151 * 331, (Integer.MAX_VALUE - 1) / 2 };
+        int[] numbers = new int[120];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = random.nextBoolean() ? divisors[random.nextInt(divisors.length)]
+                    : Integer.MAX_VALUE - random.nextInt(3);
+        }
+        checkEveryPrefix(numbers);
+        Solution.TripleCounter counter = new Solution.TripleCounter();
+        assertThrows(IllegalArgumentException.class, () -> counter.append(0));
+        assertThrows(IllegalArgumentException.class, () -> counter.append(-1));
+        assertEquals(0, counter.size());
+    }
+
+    @Test
+    void sieveMatchesQuadratic() {
+        Random random = new Random(9);
+        for (int i = 0; i < 300; i++) {
+            int[] numbers = randomNumbers(random, random.nextInt(300), 1 + random.nextInt(i % 2 == 0 ? 8 : 200));
+            assertEquals(Solution.solution(numbers, Solution.Strategy.QUADRATIC),
+                    Solution.solution(numbers, Solution.Strategy.SIEVE), Arrays.toString(numbers));
+        }
+    }
+
+    @Test
+    void sieveHandlesAValueOccurringManyTimes() {
+        Random random = new Random(11);
+        int[] numbers = new int[200000];
+        for (int i = 0; i < numbers.length; i++) numbers[i] = i % 2 == 0 ? 1 : 1 + random.nextInt(999999);
+        Solution.TripleCounter counter = new Solution.TripleCounter();
+        for (int number : numbers) counter.append(number);
+        long expected = counter.getTripleCount();
+        assertEquals(expected, assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> Solution.solution(numbers, Solution.Strategy.SIEVE)));
+    }
+
+    @Test
+    void sieveRejectsValuesPastItsLimit() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Solution.solution(new int[]{ 1, Integer.MAX_VALUE }, Solution.Strategy.SIEVE));
+    }
+
+    static int[] randomNumbers(Random random, int length, int maxValue) {
+        int[] numbers = new int[length];
+        for (int i = 0; i < length; i++) numbers[i] = 1 + random.nextInt(maxValue);
+        return numbers;
+    }
+
+    private static void checkEveryPrefix(int[] numbers) {
+        Solution.TripleCounter counter = new Solution.TripleCounter();
+        for (int i = 0; i < numbers.length; i++) {
+            int[] prefix = Arrays.copyOf(numbers, i + 1);
+            long expected = Solution.solution(prefix, Solution.Strategy.QUADRATIC);
+            assertEquals(expected, counter.append(numbers[i]), Arrays.toString(prefix));
+            assertEquals(expected, counter.getTripleCount());
+            assertEquals(i + 1, counter.size());
+        }
+    }
+
+}
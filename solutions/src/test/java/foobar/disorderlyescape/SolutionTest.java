@@ -0,0 +1,173 @@
+package foobar.disorderlyescape;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SolutionTest {
+
+    @Test
+    void solvesTheSamples() {
+        assertEquals("7", Solution.solution(2, 2, 2));
+        assertEquals("430", Solution.solution(2, 3, 4));
+    }
+
+    @Test
+    void matchesBurnsideOverEveryPermutation() {
+        for (int width = 1; width <= 5; width++) {
+            for (int height = 1; height <= 5; height++) {
+                for (int size = 1; size <= 4; size++) {
+                    assertEquals(countByBurnside(width, height, size), Solution.solution(width, height, size),
+                            width + "x" + height + " size " + size);
+                }
+            }
+        }
+    }
+
+    @Test
+    void sizeSweepMatchesEachSize() {
+        int[] sizes = { 1, 2, 20, 2, 7, 1000000, 1, Integer.MAX_VALUE, 20 };
+        int[][] grids = { { 1, 1 }, { 2, 3 }, { 5, 4 }, { 12, 12 }, { 20, 7 }, { 20, 20 }, { 21, 2 } };
+        for (int[] grid : grids) {
+            String[] expected = new String[sizes.length];
+            for (int i = 0; i < sizes.length; i++) expected[i] = Solution.solution(grid[0], grid[1], sizes[i]);
+            assertArrayEquals(expected, Solution.solution(grid[0], grid[1], sizes), grid[0] + "x" + grid[1]);
+        }
+        assertArrayEquals(new String[0], Solution.solution(3, 3, new int[0]));
+    }
+
+    @Test
+    void modularCountMatchesTheExactCount() {
+        long[] moduli = { 1000000007L, (1L << 61) - 1, 1000000000L, 97, 7, 2, 1 };
+        int[][] grids = { { 2, 3 }, { 5, 4 }, { 12, 12 }, { 21, 3 }, { 22, 22 }, { 25, 6 } };
+        for (int[] grid : grids) {
+            BigInteger exact = new BigInteger(Solution.solution(grid[0], grid[1], 20));
+            for (long modulus : moduli) {
+                assertEquals(exact.mod(BigInteger.valueOf(modulus)).longValue(),
+                        Solution.solution(grid[0], grid[1], 20, modulus), grid[0] + "x" + grid[1] + " mod " + modulus);
+            }
+        }
+    }
+
+    @Test
+    void residuesMatchTheExactCount() {
+        int[][] grids = { { 1, 1 }, { 2, 3 }, { 7, 9 }, { 20, 20 }, { 23, 4 }, { 22, 22 } };
+        for (int[] grid : grids) {
+            for (int size : new int[]{ 1, 2, 20 }) {
+                assertEquals(Solution.solution(grid[0], grid[1], size),
+                        Solution.solutionByResidues(grid[0], grid[1], size), grid[0] + "x" + grid[1] + " size " + size);
+            }
+        }
+    }
+
+    @Test
+    void answersFromALoadedTable(@TempDir Path directory) throws IOException {
+        int maxSide = 4, maxSize = 3;
+        String[][][] expected = new String[maxSide + 2][maxSide + 2][maxSize + 2];
+        for (int width = 1; width <= maxSide + 1; width++) {
+            for (int height = 1; height <= maxSide + 1; height++) {
+                for (int size = 1; size <= maxSize + 1; size++) {
+                    expected[width][height][size] = Solution.solution(width, height, size);
+                }
+            }
+        }
+        Path file = directory.resolve("answers");
+        Solution.writeAnswerTable(file, maxSide, maxSize);
+        // Mark the answer for a 2x2 grid of size 2, the eighth slot, to tell a lookup from a computed answer.
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer offset = ByteBuffer.allocate(Long.BYTES);
+            channel.read(offset, 3 * Integer.BYTES + 7 * Long.BYTES);
+            channel.write(ByteBuffer.wrap(new byte[]{ '8' }), offset.getLong(0));
+        }
+        Solution.loadAnswerTable(file);
+        try {
+            for (int width = 1; width <= maxSide + 1; width++) {
+                for (int height = 1; height <= maxSide + 1; height++) {
+                    for (int size = 1; size <= maxSize + 1; size++) {
+                        String answer = width == 2 && height == 2 && size == 2 ? "8" : expected[width][height][size];
+                        assertEquals(answer, Solution.solution(width, height, size),
+                                width + "x" + height + " size " + size);
+                    }
+                }
+            }
+        } finally {
+            Solution.loadAnswerTable(null);
+        }
+        assertEquals("7", Solution.solution(2, 2, 2));
+    }
+
+    @Test
+    void reportsPhasesOnlyToAListener() {
+        List<String> phases = new ArrayList<>();
+        Solution.setPhaseListener((engine, phase, durationNanos, workCount, allocatedBytes) ->
+                phases.add(engine + " " + phase + " " + workCount));
+        try {
+            new Solution.CycleIndexPolynomial(2, 3).evaluate(4);
+            Solution.solution(21, 2, 2);
+        } finally {
+            Solution.setPhaseListener(null);
+        }
+        Solution.solution(21, 3, 2);
+        // The cycle indices of 2 and 3 may already be cached by other tests, so only the later phases are fixed.
+        phases.removeIf(phase -> phase.startsWith("CycleIndex build"));
+        assertEquals(Arrays.asList("CycleIndexPolynomial reduce 6", "CycleIndexPolynomial evaluate 7",
+                "LargeGridSolver enumerate 2"), phases);
+    }
+
+    /**
+     * Returns the count of unique states by averaging the states fixed by every pair of row and column
+     * permutations, found by following the cycles of the grid's cells.
+     */
+    static String countByBurnside(int width, int height, int size) {
+        List<int[]> rowPermutations = getPermutations(height), columnPermutations = getPermutations(width);
+        BigInteger total = BigInteger.ZERO;
+        for (int[] rows : rowPermutations) {
+            for (int[] columns : columnPermutations) {
+                boolean[] visited = new boolean[width * height];
+                int cycles = 0;
+                for (int cell = 0; cell < visited.length; cell++) {
+                    if (visited[cell]) continue;
+                    cycles++;
+                    for (int next = cell; !visited[next]; next = rows[next / width] * width + columns[next % width]) {
+                        visited[next] = true;
+                    }
+                }
+                total = total.add(BigInteger.valueOf(size).pow(cycles));
+            }
+        }
+        return total.divide(BigInteger.valueOf((long) rowPermutations.size() * columnPermutations.size())).toString();
+    }
+
+    static List<int[]> getPermutations(int n) {
+        List<int[]> permutations = new ArrayList<>();
+        addPermutations(new int[n], new boolean[n], 0, permutations);
+        return permutations;
+    }
+
+    private static void addPermutations(int[] permutation, boolean[] used, int index, List<int[]> permutations) {
+        if (index == permutation.length) {
+            permutations.add(permutation.clone());
+            return;
+        }
+        for (int value = 0; value < permutation.length; value++) {
+            if (used[value]) continue;
+            used[value] = true;
+            permutation[index] = value;
+            addPermutations(permutation, used, index + 1, permutations);
+            used[value] = false;
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package foobar.fuelinjection;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SolutionTest {
+
+    @Test
+    void solvesTheSamples() {
+        assertEquals(2, Solution.solution("4"));
+        assertEquals(5, Solution.solution("15"));
+        assertEquals(2, Solution.solutionFromBinary("4"));
+        assertEquals(5, Solution.solutionFromBinary("15"));
+    }
+
+    @Test
+    void binaryStepsMatchTheDigitTransform() {
+        for (int number = 1; number <= 5000; number++) {
+            String text = String.valueOf(number);
+            assertEquals(Solution.solution(text), Solution.solutionFromBinary(text), text);
+        }
+        Random random = new Random(3);
+        for (int i = 0; i < 50; i++) {
+            String text = new BigInteger(1 + random.nextInt(1020), random).add(BigInteger.ONE).toString();
+            assertEquals(Solution.solution(text), Solution.solutionFromBinary(text), text);
+        }
+        assertEquals(Solution.solution("9999999999"), Solution.solutionFromBinary("9999999999"));
+    }
+
+
+    @Test
+    void rangeMatchesEachNumber(@TempDir Path directory) throws IOException {
+        long[][] ranges = { { 1, 300 }, { 12345, 140000 }, { (1L << 40) + 7, 3000 } };
+        for (long[] range : ranges) {
+            long from = range[0];
+            int count = (int) range[1];
+            byte[] expected = new byte[count];
+            for (int i = 0; i < count; i++) expected[i] = (byte) Solution.solution(String.valueOf(from + i));
+            assertArrayEquals(expected, Solution.solutionRange(from, count), "from " + from);
+            Path output = directory.resolve("steps-" + from);
+            Solution.solutionRange(from, count, output);
+            assertArrayEquals(expected, Files.readAllBytes(output), "mapped from " + from);
+        }
+        assertArrayEquals(new byte[0], Solution.solutionRange(5, 0));
+    }
+
+    @Test
+    void rangeRejectsInvalidBounds(@TempDir Path directory) throws IOException {
+        assertThrows(IllegalArgumentException.class, () -> Solution.solutionRange(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> Solution.solutionRange(1, -1));
+        assertThrows(IllegalArgumentException.class, () -> Solution.solutionRange(Long.MAX_VALUE, 2));
+        Path output = directory.resolve("steps");
+        Files.write(output, new byte[]{ 1, 2, 3 });
+        assertThrows(IllegalArgumentException.class, () -> Solution.solutionRange(0, 10, output));
+        assertThrows(IllegalArgumentException.class, () -> Solution.solutionRange(1, -1, output));
+        assertThrows(IllegalArgumentException.class, () -> Solution.solutionRange(Long.MAX_VALUE - 1, 2, output));
+        // The output is left alone when the range is rejected.
+        assertArrayEquals(new byte[]{ 1, 2, 3 }, Files.readAllBytes(output));
+    }
+
+}
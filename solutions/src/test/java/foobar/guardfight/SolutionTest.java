@@ -0,0 +1,237 @@
+package foobar.guardfight;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolutionTest {
+
+    private static final int[] SMALL_ROOM = { 3, 2 }, SMALL_START = { 1, 1 }, SMALL_END = { 2, 1 };
+
+    private static final int[] LARGE_ROOM = { 300, 275 }, LARGE_START = { 150, 150 }, LARGE_END = { 185, 100 };
+
+    @Test
+    void solvesTheSamples() {
+        assertEquals(7, Solution.solution(SMALL_ROOM, SMALL_START, SMALL_END, 4));
+        assertEquals(9, Solution.solution(LARGE_ROOM, LARGE_START, LARGE_END, 500));
+    }
+
+    @Test
+    void distanceSweepSolvesTheSamples() {
+        assertEquals(7, Solution.solutionByDistance(SMALL_ROOM, SMALL_START, SMALL_END, 4));
+        assertEquals(9, Solution.solutionByDistance(LARGE_ROOM, LARGE_START, LARGE_END, 500));
+    }
+
+    @Test
+    void distanceSweepMatchesNearestImages() {
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            Case room = Case.random(random, 80);
+            assertEquals(room.countByNearestImage(),
+                    Solution.solutionByDistance(room.dimensions, room.start, room.end, room.distance), room.toString());
+        }
+    }
+
+    @Test
+    void parallelSweepMatchesDistanceSweep() {
+        Random random = new Random(10);
+        for (int i = 0; i < 100; i++) {
+            Case room = Case.random(random, 400);
+            int expected = Solution.solutionByDistance(room.dimensions, room.start, room.end, room.distance);
+            for (int parallelism : new int[]{ 1, 2, 4 }) {
+                assertEquals(expected, Solution.solutionInParallel(room.dimensions, room.start, room.end,
+                        room.distance, parallelism), room + " with " + parallelism + " threads");
+            }
+        }
+        assertEquals(9, Solution.solutionInParallel(LARGE_ROOM, LARGE_START, LARGE_END, 500, 4));
+    }
+
+    @Test
+    void sectorSweepMatchesDistanceSweep() {
+        Random random = new Random(22);
+        // Fewer sectors than the minimum, odd counts, and counts past the directions in range and the maximum.
+        int[] sectorCounts = { -1, 1, 2, 3, 16, 1000, 8192, 100000 };
+        for (int i = 0; i < 30; i++) {
+            Case room = Case.random(random, 200);
+            int expected = Solution.solutionByDistance(room.dimensions, room.start, room.end, room.distance);
+            for (int sectors : sectorCounts) {
+                assertEquals(expected, Solution.solutionInSectors(room.dimensions, room.start, room.end,
+                        room.distance, sectors), room + " in " + sectors + " sectors");
+            }
+            for (long maxBytes : new long[]{ 0, 1, 64, 4096, 1L << 40 }) {
+                assertEquals(expected, Solution.solutionWithinMemory(room.dimensions, room.start, room.end,
+                        room.distance, maxBytes), room + " within " + maxBytes + " bytes");
+            }
+        }
+        assertEquals(9, Solution.solutionInSectors(LARGE_ROOM, LARGE_START, LARGE_END, 500, 7));
+        assertEquals(9, Solution.solutionWithinMemory(LARGE_ROOM, LARGE_START, LARGE_END, 500, 16));
+    }
+
+    @Test
+    void roomQueriesMatchDistanceSweep() {
+        Random random = new Random(11);
+        for (int i = 0; i < 40; i++) {
+            Case room = Case.random(random, 300);
+            Solution.Room solver = new Solution.Room(room.dimensions, room.start, room.distance);
+            int[][] endPoints = new int[10][];
+            int[] distances = new int[endPoints.length];
+            int[] expected = new int[endPoints.length];
+            for (int j = 0; j < endPoints.length; j++) {
+                Case query = room.withEnd(random, j == 0 ? room.distance : 1 + random.nextInt(room.distance));
+                endPoints[j] = query.end;
+                distances[j] = query.distance;
+                expected[j] = Solution.solutionByDistance(query.dimensions, query.start, query.end, query.distance);
+                assertEquals(expected[j], solver.solution(query.end, query.distance), query.toString());
+                // Asking again must not be affected by the queries in between.
+                assertEquals(expected[j], solver.solution(query.end, query.distance), query.toString());
+            }
+            assertArrayEquals(expected, solver.solution(endPoints, distances), room.toString());
+        }
+    }
+
+    @Test
+    void roomRejectsQueriesBeyondItsDistance() {
+        Solution.Room room = new Solution.Room(SMALL_ROOM, SMALL_START, 4);
+        assertEquals(7, room.solution(SMALL_END, 4));
+        assertThrows(IllegalArgumentException.class, () -> room.solution(SMALL_END, 5));
+        assertThrows(IllegalArgumentException.class,
+                () -> room.solution(new int[][]{ SMALL_END }, new int[]{ 4, 4 }));
+        assertEquals(7, room.solution(SMALL_END, 4));
+    }
+
+    @Test
+    void latticeCountSolvesTheSamples() {
+        assertEquals(7, Solution.solutionByCounting(SMALL_ROOM, SMALL_START, SMALL_END, 4));
+        assertEquals(9, Solution.solutionByCounting(LARGE_ROOM, LARGE_START, LARGE_END, 500));
+    }
+
+    @Test
+    void latticeCountMatchesDistanceSweep() {
+        Random random = new Random(12);
+        for (int i = 0; i < 500; i++) {
+            Case room = Case.random(random, 400);
+            assertEquals(Solution.solutionByDistance(room.dimensions, room.start, room.end, room.distance),
+                    Solution.solutionByCounting(room.dimensions, room.start, room.end, room.distance), room.toString());
+        }
+    }
+
+    @Test
+    void reportsPhasesOnlyToAListener() {
+        List<String> phases = new ArrayList<>();
+        Solution.setPhaseListener((engine, phase, durationNanos, workCount, allocatedBytes) -> {
+            assertTrue(durationNanos >= 0 && workCount > 0, engine + " " + phase);
+            phases.add(engine + " " + phase + " " + workCount);
+        });
+        try {
+            Solution.solution(SMALL_ROOM, SMALL_START, SMALL_END, 4);
+            Solution.solutionByDistance(SMALL_ROOM, SMALL_START, SMALL_END, 4);
+        } finally {
+            Solution.setPhaseListener(null);
+        }
+        Solution.solution(SMALL_ROOM, SMALL_START, SMALL_END, 4);
+        // The ring scan stops at the first ring without a valid position, the third here.
+        assertEquals(Arrays.asList("PathFinder scan 3", "ImageSweeper sweep 12"), phases);
+    }
+
+    /**
+     * A random room, with a brute force count which sorts every mirrored position by its distance.
+     */
+    static final class Case {
+
+        final int[] dimensions;
+
+        final int[] start;
+
+        final int[] end;
+
+        final int distance;
+
+        Case(int[] dimensions, int[] start, int[] end, int distance) {
+            this.dimensions = dimensions;
+            this.start = start;
+            this.end = end;
+            this.distance = distance;
+        }
+
+        static Case random(Random random, int maxDistance) {
+            int width = 2 + random.nextInt(12), height = 3 + random.nextInt(12);
+            int[] start = { 1 + random.nextInt(width - 1), 1 + random.nextInt(height - 1) };
+            int[] end;
+            do {
+                end = new int[]{ 1 + random.nextInt(width - 1), 1 + random.nextInt(height - 1) };
+            } while (end[0] == start[0] && end[1] == start[1]);
+            return new Case(new int[]{ width, height }, start, end, 2 + random.nextInt(maxDistance - 1));
+        }
+
+        /**
+         * Returns a case in the same room from the same start, with another random end point and distance.
+         */
+        Case withEnd(Random random, int distance) {
+            int[] end;
+            do {
+                end = new int[]{ 1 + random.nextInt(dimensions[0] - 1), 1 + random.nextInt(dimensions[1] - 1) };
+            } while (end[0] == start[0] && end[1] == start[1]);
+            return new Case(dimensions, start, end, distance);
+        }
+
+        /**
+         * Returns the number of directions whose nearest mirrored position within the distance is the end
+         * point, where a mirrored start point at the same distance blocks it.
+         */
+        int countByNearestImage() {
+            List<long[]> images = new ArrayList<>();
+            int columns = distance / dimensions[0] + 2, rows = distance / dimensions[1] + 2;
+            for (int i = -columns; i <= columns; i++) {
+                for (int j = -rows; j <= rows; j++) {
+                    addImage(images, i, j, start, 0);
+                    addImage(images, i, j, end, 1);
+                }
+            }
+            images.sort(Comparator.<long[]>comparingLong(image -> image[2]).thenComparingLong(image -> image[3]));
+            Set<Long> claimed = new HashSet<>();
+            int directions = 0;
+            for (long[] image : images) {
+                if (image[2] == 0 || image[2] > (long) distance * distance) continue;
+                long divisor = gcd(Math.abs(image[0]), Math.abs(image[1]));
+                long direction = (image[0] / divisor) << 32 ^ (image[1] / divisor & 0xffffffffL);
+                if (claimed.add(direction) && image[3] == 1) directions++;
+            }
+            return directions;
+        }
+
+        private void addImage(List<long[]> images, int column, int row, int[] point, int isEnd) {
+            long x = (long) column * dimensions[0] + ((column & 1) == 0 ? point[0] : dimensions[0] - point[0]);
+            long y = (long) row * dimensions[1] + ((row & 1) == 0 ? point[1] : dimensions[1] - point[1]);
+            long dx = x - start[0], dy = y - start[1];
+            images.add(new long[]{ dx, dy, dx * dx + dy * dy, isEnd });
+        }
+
+        private static long gcd(long a, long b) {
+            while (b != 0) {
+                long t = a % b;
+                a = b;
+                b = t;
+            }
+            return a;
+        }
+
+        @Override
+        public String toString() {
+            return dimensions[0] + "x" + dimensions[1] + " from " + start[0] + "," + start[1] + " to " + end[0] + ","
+                    + end[1] + " within " + distance;
+        }
+
+    }
+
+}
@@ -0,0 +1,174 @@
+package foobar.ironflux;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SolutionTest {
+
+    @Test
+    void solvesTheSamples() {
+        assertArrayEquals(new int[]{ 21, 15, 29 }, Solution.solution(5, new int[]{ 19, 14, 28 }));
+        assertArrayEquals(new int[]{ -1, 7, 6, 3 }, Solution.solution(3, new int[]{ 7, 3, 5, 1 }));
+    }
+
+    @Test
+    void resolverMatchesTheNodeTree() {
+        for (int height = 1; height <= 16; height++) {
+            int[] converters = everyLabel(height);
+            assertArrayEquals(Solution.solutionFromTree(height, converters), Solution.solution(height, converters),
+                    "height " + height);
+        }
+    }
+
+    @Test
+    void longResolverMatchesTheIntResolver() {
+        for (int height = 1; height <= 16; height++) {
+            int[] converters = everyLabel(height);
+            long[] labels = IntStream.of(converters).asLongStream().toArray();
+            assertArrayEquals(IntStream.of(Solution.solution(height, converters)).asLongStream().toArray(),
+                    Solution.solution(height, labels), "height " + height);
+        }
+    }
+
+    @Test
+    void resolvesTheTallestTree() {
+        int height = 62;
+        long root = (1L << height) - 1;
+        long half = (1L << (height - 1)) - 1;
+        assertArrayEquals(new long[]{ -1, -1, -1, -1, -1, -1 },
+                Solution.solution(height, new long[]{ -1, 0, root, root + 1, root + 2, Long.MIN_VALUE }));
+        // The two children of the root, then the bottom of the left and right spines.
+        assertArrayEquals(new long[]{ root, root, 3, root - height + 2 },
+                Solution.solution(height, new long[]{ half, root - 1, 1, root - height + 1 }));
+        // The right subtree holds a tree of height 61, with every label shifted past the left subtree.
+        Random random = new Random(1);
+        long[] labels = new long[1000];
+        long[] shifted = new long[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = 1 + (random.nextLong() >>> 4) % (half - 1);
+            shifted[i] = labels[i] + half;
+        }
+        long[] expected = Solution.solution(height - 1, labels);
+        long[] actual = Solution.solution(height, shifted);
+        for (int i = 0; i < labels.length; i++) {
+            assertEquals(expected[i] + half, actual[i], "label " + shifted[i]);
+        }
+        assertThrows(IllegalArgumentException.class, () -> Solution.solution(height + 1, new long[]{ 1 }));
+    }
+
+    @Test
+    void batchMatchesTheResolver() {
+        for (int height = 1; height <= 16; height++) {
+            int[] converters = everyLabel(height);
+            assertArrayEquals(Solution.solution(height, converters), Solution.solutionBatch(height, converters),
+                    "height " + height);
+        }
+        // Enough converters for the batch to be split across the pool.
+        int[] converters = new Random(2).ints(100000, -2, (1 << 17) + 2).toArray();
+        assertArrayEquals(Solution.solution(17, converters), Solution.solutionBatch(17, converters));
+        assertThrows(IllegalArgumentException.class, () -> Solution.solutionBatch(31, new int[]{ 1 }));
+    }
+
+    @Test
+    void buildsEachParentTableOnce() throws Exception {
+        int height = 20;
+        int[] converters = { 1, 1 << 19, (1 << 20) - 2 };
+        int[] expected = Solution.solution(height, converters);
+        long hits = Solution.getCacheHits();
+        long misses = Solution.getCacheMisses();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return Solution.solutionBatch(height, converters);
+                }));
+            }
+            start.countDown();
+            for (Future<int[]> result : results) assertArrayEquals(expected, result.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(misses + 1, Solution.getCacheMisses());
+        assertEquals(hits + threads - 1, Solution.getCacheHits());
+        Solution.solutionBatch(height, converters);
+        assertEquals(misses + 1, Solution.getCacheMisses());
+        assertEquals(hits + threads, Solution.getCacheHits());
+    }
+
+    @Test
+    void streamsLabelsBetweenFiles(@TempDir Path directory) throws IOException {
+        int height = 40;
+        long[] labels = new Random(3).longs(1001, -2, (1L << height) + 2).toArray();
+        Path input = directory.resolve("labels");
+        Path output = directory.resolve("parents");
+        writeLabels(input, labels);
+        // A chunk size which leaves a partial chunk at the end, and an output longer than the result.
+        Files.write(output, new byte[labels.length * 2 * Long.BYTES]);
+        Solution.solution(height, input, output, 64);
+        assertArrayEquals(Solution.solution(height, labels), readLabels(output));
+        Solution.solution(height, input, output);
+        assertArrayEquals(Solution.solution(height, labels), readLabels(output));
+
+        Path empty = directory.resolve("empty");
+        Files.createFile(empty);
+        Solution.solution(height, empty, output, 64);
+        assertEquals(0, Files.size(output));
+    }
+
+    @Test
+    void refusesToStreamAFileOntoItself(@TempDir Path directory) throws IOException {
+        long[] labels = { 1, 2, 3 };
+        Path input = directory.resolve("labels");
+        writeLabels(input, labels);
+        assertThrows(IOException.class, () -> Solution.solution(3, input, input, 2));
+        assertThrows(IOException.class, () -> Solution.solution(3, input, directory.resolve(".").resolve("labels")));
+        assertArrayEquals(labels, readLabels(input));
+
+        Files.write(directory.resolve("partial"), new byte[Long.BYTES + 1]);
+        assertThrows(IOException.class,
+                () -> Solution.solution(3, directory.resolve("partial"), directory.resolve("parents")));
+    }
+
+    /**
+     * Returns every label of a tree of the given height, along with -1, 0, 2^h and 2^h + 1.
+     */
+    private static int[] everyLabel(int height) {
+        return IntStream.rangeClosed(-1, (1 << height) + 1).toArray();
+    }
+
+    private static void writeLabels(Path file, long[] labels) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(labels.length * Long.BYTES);
+        buffer.asLongBuffer().put(labels);
+        Files.write(file, buffer.array());
+    }
+
+    private static long[] readLabels(Path file) throws IOException {
+        LongBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).asLongBuffer();
+        long[] labels = new long[buffer.remaining()];
+        buffer.get(labels);
+        return labels;
+    }
+
+}